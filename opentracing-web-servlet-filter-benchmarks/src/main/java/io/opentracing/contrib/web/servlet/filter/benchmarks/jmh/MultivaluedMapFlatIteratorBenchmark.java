@@ -0,0 +1,77 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter.benchmarks.jmh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.opentracing.contrib.web.servlet.filter.HttpServletRequestExtractAdapter.MultivaluedMapFlatIterator;
+
+/**
+ * Iteration over request headers as done by tracers extracting span context, with a new entry per header value
+ * and with a reused entry. Run with {@code -prof gc} to see allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultivaluedMapFlatIteratorBenchmark {
+
+    @Param({"5", "20", "80"})
+    public int headers;
+
+    @Param({"false", "true"})
+    public boolean reuseEntries;
+
+    private Map<String, List<String>> multiValuedMap;
+
+    @Setup
+    public void setup() {
+        multiValuedMap = new HashMap<>();
+        for (int i = 0; i < headers; i++) {
+            multiValuedMap.put("x-header-" + i, new ArrayList<>(Collections.singletonList("value-" + i)));
+        }
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        Iterator<Map.Entry<String, String>> iterator =
+                new MultivaluedMapFlatIterator<>(multiValuedMap.entrySet(), reuseEntries);
+        while (iterator.hasNext()) {
+            // entry escapes as it would into a tracer which is not inlined
+            blackhole.consume(iterator.next());
+        }
+    }
+}
@@ -0,0 +1,307 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter.benchmarks.jmh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.opentracing.Scope;
+import io.opentracing.ScopeManager;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMap;
+import io.opentracing.tag.Tag;
+import io.opentracing.util.ThreadLocalScopeManager;
+
+/**
+ * Minimal tracer doing the work common to real tracers: it scans all carrier entries on extract, generates ids,
+ * keeps tags and logs in maps and reads the clock. Finished spans are dropped instead of being reported, so
+ * the benchmark measures instrumentation cost and not a reporter. Unlike {@link io.opentracing.mock.MockTracer}
+ * it takes no locks.
+ */
+final class ReferenceTracer implements Tracer {
+
+    static final String TRACE_ID = "ref-traceid";
+    static final String SPAN_ID = "ref-spanid";
+
+    private final ScopeManager scopeManager = new ThreadLocalScopeManager();
+
+    @Override
+    public ScopeManager scopeManager() {
+        return scopeManager;
+    }
+
+    @Override
+    public Span activeSpan() {
+        return scopeManager.activeSpan();
+    }
+
+    @Override
+    public Scope activateSpan(Span span) {
+        return scopeManager.activate(span);
+    }
+
+    @Override
+    public SpanBuilder buildSpan(String operationName) {
+        return new ReferenceSpanBuilder(operationName);
+    }
+
+    @Override
+    public <C> void inject(SpanContext spanContext, Format<C> format, C carrier) {
+        if (carrier instanceof TextMap) {
+            ReferenceContext context = (ReferenceContext) spanContext;
+            ((TextMap) carrier).put(TRACE_ID, Long.toHexString(context.traceId));
+            ((TextMap) carrier).put(SPAN_ID, Long.toHexString(context.spanId));
+        }
+    }
+
+    @Override
+    public <C> SpanContext extract(Format<C> format, C carrier) {
+        if (!(carrier instanceof TextMap)) {
+            return null;
+        }
+        long traceId = 0;
+        long spanId = 0;
+        for (Map.Entry<String, String> entry: (TextMap) carrier) {
+            if (TRACE_ID.equalsIgnoreCase(entry.getKey())) {
+                traceId = parseHex(entry.getValue());
+            } else if (SPAN_ID.equalsIgnoreCase(entry.getKey())) {
+                spanId = parseHex(entry.getValue());
+            }
+        }
+        return traceId != 0 && spanId != 0 ? new ReferenceContext(traceId, spanId) : null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static long parseHex(String value) {
+        long id = 0;
+        for (int i = 0; i < value.length() && i < 16; i++) {
+            id = id << 4 | Character.digit(value.charAt(i), 16);
+        }
+        return id;
+    }
+
+    private static final class ReferenceContext implements SpanContext {
+        private final long traceId;
+        private final long spanId;
+
+        private ReferenceContext(long traceId, long spanId) {
+            this.traceId = traceId;
+            this.spanId = spanId;
+        }
+
+        @Override
+        public String toTraceId() {
+            return Long.toHexString(traceId);
+        }
+
+        @Override
+        public String toSpanId() {
+            return Long.toHexString(spanId);
+        }
+
+        @Override
+        public Iterable<Map.Entry<String, String>> baggageItems() {
+            return Collections.emptySet();
+        }
+    }
+
+    private final class ReferenceSpanBuilder implements SpanBuilder {
+        private final String operationName;
+        private final Map<String, Object> tags = new HashMap<>();
+        private ReferenceContext parent;
+        private boolean ignoreActiveSpan;
+        private long startMicros;
+
+        private ReferenceSpanBuilder(String operationName) {
+            this.operationName = operationName;
+        }
+
+        @Override
+        public SpanBuilder asChildOf(SpanContext parent) {
+            return addReference(null, parent);
+        }
+
+        @Override
+        public SpanBuilder asChildOf(Span parent) {
+            return addReference(null, parent != null ? parent.context() : null);
+        }
+
+        @Override
+        public SpanBuilder addReference(String referenceType, SpanContext referencedContext) {
+            if (parent == null && referencedContext instanceof ReferenceContext) {
+                parent = (ReferenceContext) referencedContext;
+            }
+            return this;
+        }
+
+        @Override
+        public SpanBuilder ignoreActiveSpan() {
+            ignoreActiveSpan = true;
+            return this;
+        }
+
+        @Override
+        public SpanBuilder withTag(String key, String value) {
+            tags.put(key, value);
+            return this;
+        }
+
+        @Override
+        public SpanBuilder withTag(String key, boolean value) {
+            tags.put(key, value);
+            return this;
+        }
+
+        @Override
+        public SpanBuilder withTag(String key, Number value) {
+            tags.put(key, value);
+            return this;
+        }
+
+        @Override
+        public <T> SpanBuilder withTag(Tag<T> tag, T value) {
+            tags.put(tag.getKey(), value);
+            return this;
+        }
+
+        @Override
+        public SpanBuilder withStartTimestamp(long microseconds) {
+            startMicros = microseconds;
+            return this;
+        }
+
+        @Override
+        public Span start() {
+            if (parent == null && !ignoreActiveSpan) {
+                Span active = activeSpan();
+                if (active != null && active.context() instanceof ReferenceContext) {
+                    parent = (ReferenceContext) active.context();
+                }
+            }
+            long spanId = ThreadLocalRandom.current().nextLong();
+            ReferenceContext context = new ReferenceContext(parent != null ? parent.traceId : spanId, spanId);
+            return new ReferenceSpan(operationName, context, tags,
+                    startMicros != 0 ? startMicros : System.currentTimeMillis() * 1000);
+        }
+    }
+
+    private static final class ReferenceSpan implements Span {
+        private final ReferenceContext context;
+        private final Map<String, Object> tags;
+        private final List<Object> logs = new ArrayList<>();
+        private final Map<String, String> baggage = new HashMap<>();
+        private final long startMicros;
+        private String operationName;
+        private long durationMicros;
+
+        private ReferenceSpan(String operationName, ReferenceContext context, Map<String, Object> tags,
+                long startMicros) {
+            this.operationName = operationName;
+            this.context = context;
+            this.tags = tags;
+            this.startMicros = startMicros;
+        }
+
+        @Override
+        public SpanContext context() {
+            return context;
+        }
+
+        @Override
+        public Span setTag(String key, String value) {
+            tags.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Span setTag(String key, boolean value) {
+            tags.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Span setTag(String key, Number value) {
+            tags.put(key, value);
+            return this;
+        }
+
+        @Override
+        public <T> Span setTag(Tag<T> tag, T value) {
+            tags.put(tag.getKey(), value);
+            return this;
+        }
+
+        @Override
+        public Span log(Map<String, ?> fields) {
+            return log(System.currentTimeMillis() * 1000, fields);
+        }
+
+        @Override
+        public Span log(long timestampMicroseconds, Map<String, ?> fields) {
+            logs.add(timestampMicroseconds);
+            logs.add(fields);
+            return this;
+        }
+
+        @Override
+        public Span log(String event) {
+            return log(System.currentTimeMillis() * 1000, event);
+        }
+
+        @Override
+        public Span log(long timestampMicroseconds, String event) {
+            logs.add(timestampMicroseconds);
+            logs.add(event);
+            return this;
+        }
+
+        @Override
+        public Span setBaggageItem(String key, String value) {
+            baggage.put(key, value);
+            return this;
+        }
+
+        @Override
+        public String getBaggageItem(String key) {
+            return baggage.get(key);
+        }
+
+        @Override
+        public Span setOperationName(String operationName) {
+            this.operationName = operationName;
+            return this;
+        }
+
+        @Override
+        public void finish() {
+            finish(System.currentTimeMillis() * 1000);
+        }
+
+        @Override
+        public void finish(long finishMicros) {
+            durationMicros = finishMicros - startMicros;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter.benchmarks.jmh;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draws JMH results written with {@code -rf csv} as text bar charts, one chart per combination of the other
+ * parameters, with a bar per value of the x parameter and the series parameter:
+ * <pre>
+ * java -cp benchmarks.jar io.opentracing.contrib.web.servlet.filter.benchmarks.jmh.ScalingPlot filter.csv headers decorators
+ * </pre>
+ * Secondary results of profilers, e.g. {@code gc.alloc.rate.norm} of {@code -prof gc}, are drawn when passed as
+ * the fourth argument.
+ */
+public final class ScalingPlot {
+
+    private static final int BAR_WIDTH = 50;
+
+    private ScalingPlot() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: ScalingPlot <results.csv> <x param> <series param> [secondary metric]");
+            System.exit(1);
+        }
+        List<Map<String, String>> rows = read(args[0]);
+        plot(rows, args[1], args[2], args.length > 3 ? args[3] : null, System.out);
+    }
+
+    static void plot(List<Map<String, String>> rows, String xParam, String seriesParam, String metric,
+            PrintStream out) {
+        String xColumn = "Param: " + xParam;
+        String seriesColumn = "Param: " + seriesParam;
+        Map<String, List<Map<String, String>>> charts = new LinkedHashMap<>();
+        double max = 0;
+        String unit = "";
+        for (Map<String, String> row: rows) {
+            String benchmark = row.get("Benchmark");
+            if (metric == null ? benchmark.contains(":") : !benchmark.endsWith(metric)) {
+                continue;
+            }
+            // class and method without the package
+            int method = benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1);
+            StringBuilder chart = new StringBuilder(benchmark.substring(method + 1));
+            for (Map.Entry<String, String> column: row.entrySet()) {
+                String name = column.getKey();
+                if (name.startsWith("Param: ") && !name.equals(xColumn) && !name.equals(seriesColumn)) {
+                    chart.append(' ').append(name.substring("Param: ".length())).append('=').append(column.getValue());
+                }
+            }
+            List<Map<String, String>> chartRows = charts.get(chart.toString());
+            if (chartRows == null) {
+                chartRows = new ArrayList<>();
+                charts.put(chart.toString(), chartRows);
+            }
+            chartRows.add(row);
+            max = Math.max(max, score(row));
+            unit = row.get("Unit");
+        }
+
+        for (Map.Entry<String, List<Map<String, String>>> chart: charts.entrySet()) {
+            out.println(chart.getKey());
+            for (Map<String, String> row: chart.getValue()) {
+                double score = score(row);
+                int width = max > 0 ? (int) Math.round(score / max * BAR_WIDTH) : 0;
+                out.println(String.format("  %s=%-6s %s=%-6s |%-" + BAR_WIDTH + "s %12.1f %s",
+                        xParam, row.get(xColumn), seriesParam, row.get(seriesColumn), bar(width), score, unit));
+            }
+            out.println();
+        }
+    }
+
+    private static double score(Map<String, String> row) {
+        // JMH formats numbers with the default locale
+        return Double.parseDouble(row.get("Score").replace(',', '.'));
+    }
+
+    private static String bar(int width) {
+        StringBuilder bar = new StringBuilder(width);
+        for (int i = 0; i < width; i++) {
+            bar.append('#');
+        }
+        return bar.toString();
+    }
+
+    static List<Map<String, String>> read(String file) throws IOException {
+        List<Map<String, String>> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            List<String> header = parseLine(reader.readLine());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                List<String> values = parseLine(line);
+                Map<String, String> row = new LinkedHashMap<>();
+                for (int i = 0; i < header.size() && i < values.size(); i++) {
+                    row.put(header.get(i), values.get(i));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    static List<String> parseLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+}
@@ -0,0 +1,244 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter.benchmarks.jmh;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * In-memory servlet objects for running {@link io.opentracing.contrib.web.servlet.filter.TracingFilter} without
+ * a container. Only methods used by the filter and its decorators are implemented, others throw
+ * {@link UnsupportedOperationException} so that a benchmark does not silently measure a missing code path.
+ */
+final class ServletFixtures {
+
+    static final FilterChain CHAIN = new FilterChain() {
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response) {
+        }
+    };
+
+    private ServletFixtures() {
+    }
+
+    /**
+     * @param servletContext context of the filter
+     * @return filter config
+     */
+    static FilterConfig filterConfig(final ServletContext servletContext) {
+        return new FilterConfig() {
+            @Override
+            public String getFilterName() {
+                return "tracingFilter";
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return servletContext;
+            }
+
+            @Override
+            public String getInitParameter(String name) {
+                return null;
+            }
+
+            @Override
+            public Enumeration<String> getInitParameterNames() {
+                return Collections.emptyEnumeration();
+            }
+        };
+    }
+
+    /**
+     * @param attributes context attributes, e.g. filter configuration
+     * @return servlet context supporting attributes only
+     */
+    static ServletContext servletContext(Map<String, Object> attributes) {
+        final Map<String, Object> contextAttributes = new ConcurrentHashMap<>(attributes);
+        return unsupported(ServletContext.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getAttribute":
+                        return contextAttributes.get(args[0]);
+                    case "setAttribute":
+                        contextAttributes.put((String) args[0], args[1]);
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        });
+    }
+
+    /**
+     * @param headers number of request headers, named {@code x-header-<i>}
+     * @return GET request of {@code /hello?tenant=acme}
+     */
+    static Request request(int headers) {
+        Map<String, String> headerMap = new LinkedHashMap<>();
+        for (int i = 0; i < headers; i++) {
+            headerMap.put("x-header-" + i, "value-" + i);
+        }
+        return new Request(headerMap);
+    }
+
+    static Response response() {
+        return new Response();
+    }
+
+    private static <T> T unsupported(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static <T> T unsupported(Class<T> type) {
+        return unsupported(type, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    static final class Request extends HttpServletRequestWrapper {
+        private final Map<String, String> headers;
+        private final List<String> headerNames;
+        private final Map<String, Object> attributes = new HashMap<>();
+        private final StringBuffer requestUrl = new StringBuffer("http://localhost:8080/hello");
+
+        private Request(Map<String, String> headers) {
+            super(unsupported(HttpServletRequest.class));
+            this.headers = headers;
+            this.headerNames = new ArrayList<>(headers.keySet());
+        }
+
+        @Override
+        public DispatcherType getDispatcherType() {
+            return DispatcherType.REQUEST;
+        }
+
+        @Override
+        public String getMethod() {
+            return "GET";
+        }
+
+        @Override
+        public StringBuffer getRequestURL() {
+            // callers only read it, sharing avoids measuring the fixture
+            return requestUrl;
+        }
+
+        @Override
+        public String getRequestURI() {
+            return "/hello";
+        }
+
+        @Override
+        public String getContextPath() {
+            return "";
+        }
+
+        @Override
+        public String getServletPath() {
+            return "/hello";
+        }
+
+        @Override
+        public String getPathInfo() {
+            return null;
+        }
+
+        @Override
+        public String getQueryString() {
+            return "tenant=acme";
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            return Collections.enumeration(headerNames);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            String value = headers.get(name);
+            return value != null ? Collections.enumeration(Collections.singletonList(value))
+                    : Collections.<String>emptyEnumeration();
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        @Override
+        public void setAttribute(String name, Object o) {
+            attributes.put(name, o);
+        }
+
+        @Override
+        public void removeAttribute(String name) {
+            attributes.remove(name);
+        }
+
+        @Override
+        public boolean isAsyncStarted() {
+            return false;
+        }
+
+        /**
+         * Clears attributes set by the previous invocation, otherwise the filter sees an already traced request.
+         */
+        void reset() {
+            attributes.clear();
+        }
+    }
+
+    static final class Response extends HttpServletResponseWrapper {
+
+        private Response() {
+            super(unsupported(HttpServletResponse.class));
+        }
+
+        @Override
+        public int getStatus() {
+            return 200;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter.benchmarks.jmh;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.opentracing.Tracer;
+import io.opentracing.contrib.web.servlet.filter.ServletFilterSpanDecorator;
+import io.opentracing.contrib.web.servlet.filter.TracingFilter;
+import io.opentracing.contrib.web.servlet.filter.benchmarks.loadtest.LoadTest;
+import io.opentracing.contrib.web.servlet.filter.decorator.HeaderRedaction;
+import io.opentracing.contrib.web.servlet.filter.decorator.ServletFilterHeaderSpanDecorator;
+import io.opentracing.contrib.web.servlet.filter.decorator.ServletFilterHeaderSpanDecorator.HeaderEntry;
+import io.opentracing.contrib.web.servlet.filter.decorator.ServletFilterQueryParameterSpanDecorator;
+import io.opentracing.contrib.web.servlet.filter.decorator.ServletFilterQueryParameterSpanDecorator.ParameterEntry;
+import io.opentracing.contrib.web.servlet.filter.decorator.ServletFilterQueueTimeSpanDecorator;
+import io.opentracing.noop.NoopTracerFactory;
+
+/**
+ * Cost of a synchronous request in {@link TracingFilter} by tracer, number of request headers and number of span
+ * decorators. The filter hands all headers to the tracer and calls every decorator, so the cost is expected to grow
+ * linearly in both. Write results as CSV with {@code -rf csv -rff filter.csv} and draw them with
+ * {@link ScalingPlot}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracingFilterBenchmark {
+
+    @Param({"noop", "mock", "reference"})
+    public String tracer;
+
+    @Param({"5", "20", "80"})
+    public int headers;
+
+    @Param({"0", "1", "5"})
+    public int decorators;
+
+    private TracingFilter filter;
+    private ServletFixtures.Request request;
+    private ServletFixtures.Response response;
+
+    @Setup
+    public void setup() throws ServletException {
+        filter = tracingFilter(tracer, decorators);
+        request = ServletFixtures.request(headers);
+        response = ServletFixtures.response();
+    }
+
+    @Benchmark
+    public void doFilter() throws IOException, ServletException {
+        request.reset();
+        filter.doFilter(request, response, ServletFixtures.CHAIN);
+    }
+
+    static TracingFilter tracingFilter(String tracer, int decorators) throws ServletException {
+        TracingFilter filter = new TracingFilter(tracer(tracer), decorators(decorators), null);
+        filter.init(ServletFixtures.filterConfig(
+                ServletFixtures.servletContext(Collections.<String, Object>emptyMap())));
+        return filter;
+    }
+
+    static Tracer tracer(String name) {
+        switch (name) {
+            case "noop":
+                return NoopTracerFactory.create();
+            case "mock":
+                return new LoadTest.BoundedMockTracer();
+            case "reference":
+                return new ReferenceTracer();
+            default:
+                throw new IllegalArgumentException("Unknown tracer " + name);
+        }
+    }
+
+    /**
+     * @param count 0, 1 for standard tags only or up to 5 with decorators of this repository
+     * @return decorators
+     */
+    static List<ServletFilterSpanDecorator> decorators(int count) {
+        List<ServletFilterSpanDecorator> decorators = new ArrayList<>(Arrays.asList(
+                ServletFilterSpanDecorator.STANDARD_TAGS,
+                new ServletFilterHeaderSpanDecorator(Arrays.asList(
+                        new HeaderEntry("x-header-0", "header0"),
+                        new HeaderEntry("x-header-1", "header1"))),
+                new ServletFilterHeaderSpanDecorator(Arrays.asList(
+                        new HeaderEntry("x-header-2", "header2", HeaderRedaction.prefix(3)),
+                        new HeaderEntry("x-header-3", "header3",
+                                HeaderRedaction.hmacSha256("benchmark".getBytes(StandardCharsets.UTF_8)))),
+                        "http.redacted.", 64),
+                new ServletFilterQueueTimeSpanDecorator(),
+                new ServletFilterQueryParameterSpanDecorator(Collections.singletonList(
+                        new ParameterEntry("tenant", "tenant", 16)))));
+        if (count > decorators.size()) {
+            throw new IllegalArgumentException("At most " + decorators.size() + " decorators");
+        }
+        return decorators.subList(0, count);
+    }
+}
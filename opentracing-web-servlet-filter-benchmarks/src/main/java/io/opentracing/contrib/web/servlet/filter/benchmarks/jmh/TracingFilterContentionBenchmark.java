@@ -0,0 +1,107 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter.benchmarks.jmh;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.opentracing.contrib.web.servlet.filter.InFlightRequests;
+import io.opentracing.contrib.web.servlet.filter.TracingFilter;
+
+/**
+ * {@link TracingFilter} shared by 1, 8, 32 and 64 threads, as in a container on a many-core host. Decorators, skip
+ * pattern, in-flight request counters and the tracer are shared, each thread has its own request. Time per
+ * operation should stay flat as threads are added, growth points to contention on a lock or a shared cache line.
+ * On Linux run with {@code -prof perfc2c} or {@code -prof perfnorm} to find the contended memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracingFilterContentionBenchmark {
+
+    @Param({"noop", "mock", "reference"})
+    public String tracer;
+
+    private TracingFilter filter;
+
+    @State(Scope.Thread)
+    public static class ThreadRequest {
+        private ServletFixtures.Request request;
+        private ServletFixtures.Response response;
+
+        @Setup
+        public void setup() {
+            request = ServletFixtures.request(20);
+            response = ServletFixtures.response();
+        }
+    }
+
+    @Setup
+    public void setup() throws ServletException {
+        filter = new TracingFilter(TracingFilterBenchmark.tracer(tracer), TracingFilterBenchmark.decorators(5),
+                Pattern.compile("/health"));
+        filter.init(ServletFixtures.filterConfig(ServletFixtures.servletContext(
+                Collections.<String, Object>singletonMap(TracingFilter.IN_FLIGHT_REQUESTS, new InFlightRequests()))));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void threads1(ThreadRequest threadRequest) throws IOException, ServletException {
+        doFilter(threadRequest);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void threads8(ThreadRequest threadRequest) throws IOException, ServletException {
+        doFilter(threadRequest);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void threads32(ThreadRequest threadRequest) throws IOException, ServletException {
+        doFilter(threadRequest);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void threads64(ThreadRequest threadRequest) throws IOException, ServletException {
+        doFilter(threadRequest);
+    }
+
+    private void doFilter(ThreadRequest threadRequest) throws IOException, ServletException {
+        threadRequest.request.reset();
+        filter.doFilter(threadRequest.request, threadRequest.response, ServletFixtures.CHAIN);
+    }
+}
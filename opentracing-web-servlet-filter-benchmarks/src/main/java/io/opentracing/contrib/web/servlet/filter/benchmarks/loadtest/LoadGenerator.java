@@ -0,0 +1,239 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter.benchmarks.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Constant rate HTTP/1.1 load generator with coordinated omission correction.
+ *
+ * Every connection sends requests on a fixed schedule. Latency is measured from the time the request was
+ * supposed to be sent, not from the time it was actually sent, hence a stalled server is accounted for all
+ * requests which could not be sent in the meantime.
+ *
+ * Responses with status code 5xx and transport failures are counted separately. A request which fails with an
+ * I/O error is not recorded in the histogram, the connection is opened again for the next request.
+ */
+class LoadGenerator {
+    private static final Logger log = Logger.getLogger(LoadGenerator.class.getName());
+
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final int requestsPerSecond;
+
+    LoadGenerator(String host, int port, int connections, int requestsPerSecond) {
+        this.host = host;
+        this.port = port;
+        this.connections = connections;
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    Result run(String path, long warmupMillis, long durationMillis) throws InterruptedException {
+        final byte[] request = ("GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        final long intervalNanos = TimeUnit.SECONDS.toNanos(connections) / requestsPerSecond;
+        final long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        final long recordFromNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+        final long endNanos = recordFromNanos + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+        List<Worker> workers = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            // spread connections evenly over the interval
+            Worker worker = new Worker(request, startNanos + i * intervalNanos / connections, intervalNanos,
+                    recordFromNanos, endNanos);
+            workers.add(worker);
+            worker.start();
+        }
+
+        Histogram histogram = new Histogram(TimeUnit.SECONDS.toNanos(60), 3);
+        long serverErrors = 0;
+        long transportErrors = 0;
+        for (Worker worker: workers) {
+            worker.join();
+            histogram.add(worker.histogram);
+            serverErrors += worker.serverErrors;
+            transportErrors += worker.transportErrors;
+        }
+        return new Result(histogram, serverErrors, transportErrors, durationMillis);
+    }
+
+    private class Worker extends Thread {
+        private final byte[] request;
+        private final long firstNanos;
+        private final long intervalNanos;
+        private final long recordFromNanos;
+        private final long endNanos;
+        private final Histogram histogram = new Histogram(TimeUnit.SECONDS.toNanos(60), 3);
+        private long serverErrors;
+        private long transportErrors;
+
+        Worker(byte[] request, long firstNanos, long intervalNanos, long recordFromNanos, long endNanos) {
+            super("load-generator");
+            setDaemon(true);
+            this.request = request;
+            this.firstNanos = firstNanos;
+            this.intervalNanos = intervalNanos;
+            this.recordFromNanos = recordFromNanos;
+            this.endNanos = endNanos;
+        }
+
+        @Override
+        public void run() {
+            Socket socket = null;
+            OutputStream out = null;
+            InputStream in = null;
+            try {
+                for (long intendedNanos = firstNanos; intendedNanos < endNanos; intendedNanos += intervalNanos) {
+                    long now;
+                    while ((now = System.nanoTime()) < intendedNanos) {
+                        LockSupport.parkNanos(intendedNanos - now);
+                    }
+
+                    int status;
+                    try {
+                        if (socket == null) {
+                            socket = connect();
+                            out = socket.getOutputStream();
+                            in = new BufferedInputStream(socket.getInputStream());
+                        }
+                        out.write(request);
+                        out.flush();
+                        status = readResponse(in);
+                    } catch (IOException e) {
+                        // first failure of the connection is logged, the rest is only counted
+                        log.log(transportErrors == 0 ? Level.WARNING : Level.FINE, "Request failed", e);
+                        transportErrors++;
+                        close(socket);
+                        socket = null;
+                        continue;
+                    }
+                    if (status < 0) {
+                        // server closes the connection
+                        status = -status;
+                        close(socket);
+                        socket = null;
+                    }
+                    if (status >= 500) {
+                        serverErrors++;
+                    }
+
+                    if (intendedNanos >= recordFromNanos) {
+                        histogram.recordValue(Math.min(System.nanoTime() - intendedNanos,
+                                histogram.getHighestTrackableValue()));
+                    }
+                }
+            } finally {
+                close(socket);
+            }
+        }
+
+        private void close(Socket socket) {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+        private Socket connect() throws IOException {
+            Socket socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port));
+            return socket;
+        }
+    }
+
+    /**
+     * Reads response with Content-Length body.
+     *
+     * @return status code, negative if the server closes the connection
+     */
+    static int readResponse(InputStream in) throws IOException {
+        int status = -1;
+        int contentLength = 0;
+        boolean close = false;
+        StringBuilder line = new StringBuilder(64);
+        while (true) {
+            line.setLength(0);
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c == -1) {
+                    throw new IOException("Connection closed");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            if (line.length() == 0) {
+                break;
+            }
+            if (status == -1) {
+                // HTTP/1.1 200 OK
+                status = Integer.parseInt(line.substring(9, 12));
+            } else if (line.length() > 15 && "content-length:".equalsIgnoreCase(line.substring(0, 15))) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            } else if ("connection: close".equalsIgnoreCase(line.toString())) {
+                close = true;
+            }
+        }
+        for (int i = 0; i < contentLength; i++) {
+            if (in.read() == -1) {
+                throw new IOException("Connection closed");
+            }
+        }
+        return close ? -status : status;
+    }
+
+    static class Result {
+        final Histogram histogram;
+        // responses with status code 5xx
+        final long serverErrors;
+        // requests failed with an I/O error, without a response
+        final long transportErrors;
+        final long durationMillis;
+
+        Result(Histogram histogram, long serverErrors, long transportErrors, long durationMillis) {
+            this.histogram = histogram;
+            this.serverErrors = serverErrors;
+            this.transportErrors = transportErrors;
+            this.durationMillis = durationMillis;
+        }
+
+        double throughput() {
+            return histogram.getTotalCount() * 1000.0 / durationMillis;
+        }
+
+        double percentileMicros(double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter.benchmarks.loadtest;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.StdErrLog;
+
+import io.opentracing.Tracer;
+import io.opentracing.contrib.web.servlet.filter.ServletFilterSpanDecorator;
+import io.opentracing.contrib.web.servlet.filter.TracingFilter;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.noop.NoopTracerFactory;
+import io.opentracing.util.ThreadLocalScopeManager;
+
+/**
+ * End-to-end load test of {@link TracingFilter} in embedded Jetty.
+ *
+ * Every endpoint is driven at a constant rate by {@link LoadGenerator} for these scenarios: no filter, filter
+ * with no-op tracer and filter with {@link MockTracer}. Throughput and p50/p99/p99.9 latencies are printed,
+ * {@code 5xx} column counts responses with status code 5xx, which is expected for every request of
+ * {@code /error}, and {@code io-errors} column counts requests failed without a response.
+ *
+ * Configuration via system properties: {@code rate} (requests per second, default 2000), {@code connections}
+ * (default 8), {@code warmup} and {@code duration} (seconds, default 10 and 30).
+ */
+public class LoadTest {
+
+    private static final String[] ENDPOINTS = {"/hello", "/async", "/error"};
+
+    public static void main(String[] args) throws Exception {
+        int rate = Integer.getInteger("rate", 2000);
+        int connections = Integer.getInteger("connections", 8);
+        long warmupMillis = Long.getLong("warmup", 10) * 1000;
+        long durationMillis = Long.getLong("duration", 30) * 1000;
+
+        StdErrLog logger = new StdErrLog();
+        logger.setLevel(StdErrLog.LEVEL_WARN);
+        Log.setLog(logger);
+
+        System.out.printf(Locale.ROOT, "rate=%d/s connections=%d warmup=%ds duration=%ds%n",
+                rate, connections, warmupMillis / 1000, durationMillis / 1000);
+        System.out.printf(Locale.ROOT, "%-12s %-20s %10s %10s %10s %10s %8s %10s%n",
+                "scenario", "endpoint", "req/s", "p50[us]", "p99[us]", "p99.9[us]", "5xx", "io-errors");
+
+        for (Scenario scenario: Scenario.values()) {
+            Server server = startServer(scenario.filter());
+            try {
+                int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+                LoadGenerator generator = new LoadGenerator("localhost", port, connections, rate);
+                for (String endpoint: ENDPOINTS) {
+                    LoadGenerator.Result result = generator.run(endpoint, warmupMillis, durationMillis);
+                    System.out.printf(Locale.ROOT, "%-12s %-20s %10.1f %10.1f %10.1f %10.1f %8d %10d%n",
+                            scenario.name().toLowerCase(Locale.ROOT), endpoint, result.throughput(),
+                            result.percentileMicros(50), result.percentileMicros(99),
+                            result.percentileMicros(99.9), result.serverErrors, result.transportErrors);
+                }
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    private static Server startServer(Filter filter) throws Exception {
+        ServletContextHandler servletContext = new ServletContextHandler();
+        servletContext.setContextPath("/");
+        servletContext.addServlet(Servlets.HelloServlet.class, "/hello");
+        servletContext.addServlet(Servlets.AsyncServlet.class, "/async").setAsyncSupported(true);
+        servletContext.addServlet(Servlets.ErrorServlet.class, "/error");
+        if (filter != null) {
+            servletContext.addFilter(new FilterHolder(filter), "/*", EnumSet.of(DispatcherType.REQUEST,
+                    DispatcherType.FORWARD, DispatcherType.ASYNC, DispatcherType.ERROR, DispatcherType.INCLUDE));
+        }
+
+        Server server = new Server(0);
+        server.setHandler(servletContext);
+        server.start();
+        return server;
+    }
+
+    private static TracingFilter tracingFilter(Tracer tracer) {
+        return new TracingFilter(tracer, Collections.singletonList(ServletFilterSpanDecorator.STANDARD_TAGS),
+                Pattern.compile("/health"));
+    }
+
+    enum Scenario {
+        NO_FILTER {
+            @Override
+            Filter filter() {
+                return null;
+            }
+        },
+        NOOP_TRACER {
+            @Override
+            Filter filter() {
+                return tracingFilter(NoopTracerFactory.create());
+            }
+        },
+        MOCK_TRACER {
+            @Override
+            Filter filter() {
+                return tracingFilter(new BoundedMockTracer());
+            }
+        };
+
+        abstract Filter filter();
+    }
+
+    /**
+     * Mock tracer which periodically drops finished spans to keep the heap bounded.
+     */
+    public static class BoundedMockTracer extends MockTracer {
+        private static final int MAX_FINISHED_SPANS = 10000;
+        private int finished;
+
+        public BoundedMockTracer() {
+            super(new ThreadLocalScopeManager(), Propagator.TEXT_MAP);
+        }
+
+        @Override
+        protected void onSpanFinished(MockSpan mockSpan) {
+            // called with the tracer lock held
+            if (++finished >= MAX_FINISHED_SPANS) {
+                finished = 0;
+                reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter.benchmarks.loadtest;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlets mirroring the ones used in filter tests.
+ */
+public final class Servlets {
+
+    private static final byte[] BODY = "ok".getBytes();
+
+    private Servlets() {}
+
+    static void writeBody(HttpServletResponse response) throws IOException {
+        response.setContentLength(BODY.length);
+        response.getOutputStream().write(BODY);
+    }
+
+    public static class HelloServlet extends HttpServlet {
+
+        @Override
+        public void doGet(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException {
+            response.setStatus(HttpServletResponse.SC_ACCEPTED);
+            writeBody(response);
+        }
+    }
+
+    public static class AsyncServlet extends HttpServlet {
+
+        @Override
+        public void doGet(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException {
+            final AsyncContext asyncContext = request.startAsync(request, response);
+            asyncContext.start(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        writeBody((HttpServletResponse) asyncContext.getResponse());
+                    } catch (IOException e) {
+                        ((HttpServletResponse) asyncContext.getResponse()).setStatus(500);
+                    } finally {
+                        asyncContext.complete();
+                    }
+                }
+            });
+        }
+    }
+
+    public static class ErrorServlet extends HttpServlet {
+
+        @Override
+        public void doGet(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+    }
+}
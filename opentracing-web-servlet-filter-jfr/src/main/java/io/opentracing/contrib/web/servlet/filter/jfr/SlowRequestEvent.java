@@ -0,0 +1,65 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of an HTTP request traced by {@link io.opentracing.contrib.web.servlet.filter.TracingFilter}.
+ * The event spans the request processing, so it can be correlated with GC, lock and I/O events of the same
+ * recording. Threshold of the event defaults to 0, {@link SlowRequestEventDecorator} applies its own threshold.
+ */
+@Name(SlowRequestEvent.NAME)
+@Label("Slow HTTP Request")
+@Category({"OpenTracing", "HTTP"})
+@Description("HTTP request which took longer than the configured threshold")
+@Threshold("0 ms")
+@StackTrace(false)
+public class SlowRequestEvent extends Event {
+
+    public static final String NAME = "io.opentracing.contrib.web.servlet.SlowRequest";
+
+    @Label("Method")
+    String method;
+
+    @Label("Route")
+    @Description("Servlet path of the request")
+    String route;
+
+    @Label("Path")
+    @Description("Request URI without query string")
+    String path;
+
+    @Label("Status")
+    int status;
+
+    @Label("Error")
+    boolean error;
+
+    @Label("Trace Id")
+    String traceId;
+
+    @Label("Span Id")
+    String spanId;
+
+    // System.nanoTime() at the beginning, transient fields are not recorded
+    transient long startNanos;
+}
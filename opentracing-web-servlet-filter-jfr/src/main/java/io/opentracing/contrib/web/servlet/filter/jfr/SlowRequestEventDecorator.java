@@ -0,0 +1,108 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter.jfr;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.contrib.web.servlet.filter.ServletFilterSpanDecorator;
+import java.time.Duration;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * SlowRequestEventDecorator emits a {@link SlowRequestEvent} with the trace id for requests slower than
+ * {@link #threshold}. When no recording enables the event only {@link jdk.jfr.Event#isEnabled()} is checked per
+ * request. The event begins in {@link #onRequest(HttpServletRequest, Span)} and is committed in
+ * {@link #onResponse(HttpServletRequest, HttpServletResponse, Span)} or
+ * {@link #onError(HttpServletRequest, HttpServletResponse, Throwable, Span)}, for async requests on the thread
+ * completing the request.
+ */
+public class SlowRequestEventDecorator implements ServletFilterSpanDecorator {
+
+    static final String EVENT_ATTRIBUTE = SlowRequestEventDecorator.class.getName() + ".event";
+
+    private final long thresholdNanos;
+
+    /**
+     * Constructor of SlowRequestEventDecorator with a threshold of 100 milliseconds.
+     */
+    public SlowRequestEventDecorator() {
+        this(Duration.ofMillis(100));
+    }
+
+    /**
+     * @param threshold minimal duration of a request to commit its event
+     */
+    public SlowRequestEventDecorator(Duration threshold) {
+        if (threshold.isNegative()) {
+            throw new IllegalArgumentException("threshold must not be negative");
+        }
+        this.thresholdNanos = threshold.toNanos();
+    }
+
+    @Override
+    public void onRequest(HttpServletRequest httpServletRequest, Span span) {
+        SlowRequestEvent event = new SlowRequestEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.startNanos = System.nanoTime();
+        event.begin();
+        httpServletRequest.setAttribute(EVENT_ATTRIBUTE, event);
+    }
+
+    @Override
+    public void onResponse(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+            Span span) {
+        commit(httpServletRequest, httpServletResponse.getStatus(), false, span);
+    }
+
+    @Override
+    public void onError(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+            Throwable exception, Span span) {
+        int status = httpServletResponse.getStatus();
+        // exception is thrown in filter chain, but status code is incorrect
+        commit(httpServletRequest, status == HttpServletResponse.SC_OK
+                ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : status, true, span);
+    }
+
+    @Override
+    public void onTimeout(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+            long timeout, Span span) {
+    }
+
+    private void commit(HttpServletRequest httpServletRequest, int status, boolean error, Span span) {
+        Object attribute = httpServletRequest.getAttribute(EVENT_ATTRIBUTE);
+        if (!(attribute instanceof SlowRequestEvent)) {
+            return;
+        }
+        // async errors are followed by completion, the event is committed once
+        httpServletRequest.removeAttribute(EVENT_ATTRIBUTE);
+        SlowRequestEvent event = (SlowRequestEvent) attribute;
+        event.end();
+        if (System.nanoTime() - event.startNanos < thresholdNanos || !event.shouldCommit()) {
+            return;
+        }
+        SpanContext spanContext = span.context();
+        event.method = httpServletRequest.getMethod();
+        event.route = httpServletRequest.getServletPath();
+        event.path = httpServletRequest.getRequestURI();
+        event.status = status;
+        event.error = error;
+        event.traceId = spanContext.toTraceId();
+        event.spanId = spanContext.toSpanId();
+        event.commit();
+    }
+}
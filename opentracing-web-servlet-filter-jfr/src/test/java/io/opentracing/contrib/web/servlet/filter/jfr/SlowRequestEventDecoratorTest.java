@@ -0,0 +1,151 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter.jfr;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SlowRequestEventDecoratorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private HttpServletRequest httpServletRequest;
+    @Mock
+    private HttpServletResponse httpServletResponse;
+
+    private final MockTracer mockTracer = new MockTracer();
+    private MockSpan span;
+    private Recording recording;
+
+    @Before
+    public void init() {
+        span = mockTracer.buildSpan("GET").start();
+        Mockito.when(httpServletRequest.getMethod()).thenReturn("GET");
+        Mockito.when(httpServletRequest.getServletPath()).thenReturn("/orders");
+        Mockito.when(httpServletRequest.getRequestURI()).thenReturn("/app/orders");
+        // request attributes are backed by a real map
+        final Map<String, Object> attributes = new HashMap<>();
+        Mockito.doAnswer(invocation -> attributes.put((String) invocation.getArguments()[0],
+                invocation.getArguments()[1]))
+                .when(httpServletRequest).setAttribute(Mockito.anyString(), Mockito.any());
+        Mockito.when(httpServletRequest.getAttribute(Mockito.anyString()))
+                .thenAnswer(invocation -> attributes.get(invocation.getArguments()[0]));
+        Mockito.doAnswer(invocation -> attributes.remove(invocation.getArguments()[0]))
+                .when(httpServletRequest).removeAttribute(Mockito.anyString());
+
+        recording = new Recording();
+        recording.enable(SlowRequestEvent.class);
+        recording.start();
+    }
+
+    @After
+    public void close() {
+        recording.close();
+    }
+
+    @Test
+    public void givenSlowRequest_whenOnResponse_thenItShouldCommitEvent() throws IOException {
+        SlowRequestEventDecorator decorator = new SlowRequestEventDecorator(Duration.ZERO);
+        Mockito.when(httpServletResponse.getStatus()).thenReturn(201);
+
+        decorator.onRequest(httpServletRequest, span);
+        decorator.onResponse(httpServletRequest, httpServletResponse, span);
+
+        List<RecordedEvent> events = events();
+        Assert.assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        Assert.assertEquals("GET", event.getString("method"));
+        Assert.assertEquals("/orders", event.getString("route"));
+        Assert.assertEquals("/app/orders", event.getString("path"));
+        Assert.assertEquals(201, event.getInt("status"));
+        Assert.assertFalse(event.getBoolean("error"));
+        Assert.assertEquals(span.context().toTraceId(), event.getString("traceId"));
+        Assert.assertEquals(span.context().toSpanId(), event.getString("spanId"));
+        Assert.assertFalse(event.hasField("startNanos"));
+    }
+
+    @Test
+    public void givenFastRequest_whenOnResponse_thenItShouldNotCommitEvent() throws IOException {
+        SlowRequestEventDecorator decorator = new SlowRequestEventDecorator(Duration.ofHours(1));
+
+        decorator.onRequest(httpServletRequest, span);
+        decorator.onResponse(httpServletRequest, httpServletResponse, span);
+
+        Assert.assertEquals(0, events().size());
+    }
+
+    @Test
+    public void givenError_whenOnErrorAndOnResponse_thenItShouldCommitOnce() throws IOException {
+        SlowRequestEventDecorator decorator = new SlowRequestEventDecorator(Duration.ZERO);
+        Mockito.when(httpServletResponse.getStatus()).thenReturn(200);
+
+        decorator.onRequest(httpServletRequest, span);
+        decorator.onError(httpServletRequest, httpServletResponse, new RuntimeException(), span);
+        decorator.onResponse(httpServletRequest, httpServletResponse, span);
+
+        List<RecordedEvent> events = events();
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(500, events.get(0).getInt("status"));
+        Assert.assertTrue(events.get(0).getBoolean("error"));
+    }
+
+    @Test
+    public void givenNoRecording_whenOnRequest_thenItShouldNotSetAttribute() {
+        recording.close();
+        SlowRequestEventDecorator decorator = new SlowRequestEventDecorator(Duration.ZERO);
+
+        decorator.onRequest(httpServletRequest, span);
+
+        Mockito.verify(httpServletRequest, Mockito.never()).setAttribute(Mockito.anyString(), Mockito.any());
+    }
+
+    private List<RecordedEvent> events() throws IOException {
+        recording.stop();
+        File file = temporaryFolder.newFile("recording.jfr");
+        recording.dump(file.toPath());
+        List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if (event.getEventType().getName().equals(SlowRequestEvent.NAME)) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+}
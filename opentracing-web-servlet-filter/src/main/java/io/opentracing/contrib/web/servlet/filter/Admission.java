@@ -0,0 +1,76 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Decision of {@link AdmissionControl}. Instances are immutable and should be created once and reused.
+ */
+public final class Admission {
+
+    public static final Admission ADMIT = new Admission(true, HttpServletResponse.SC_OK, null, 0);
+
+    private final boolean admitted;
+    private final int statusCode;
+    private final String reason;
+    private final int retryAfterSeconds;
+
+    private Admission(boolean admitted, int statusCode, String reason, int retryAfterSeconds) {
+        this.admitted = admitted;
+        this.statusCode = statusCode;
+        this.reason = reason;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Reject the request.
+     *
+     * @param statusCode status code sent to the client e.g. 503 or 429
+     * @param reason reason recorded on the span
+     * @return rejection
+     */
+    public static Admission reject(int statusCode, String reason) {
+        return new Admission(false, statusCode, reason, 0);
+    }
+
+    /**
+     * Reject the request and ask the client to retry later via {@code Retry-After} header.
+     *
+     * @param statusCode status code sent to the client e.g. 503 or 429
+     * @param reason reason recorded on the span
+     * @param retryAfterSeconds value of {@code Retry-After} header
+     * @return rejection
+     */
+    public static Admission defer(int statusCode, String reason, int retryAfterSeconds) {
+        return new Admission(false, statusCode, reason, retryAfterSeconds);
+    }
+
+    public boolean isAdmitted() {
+        return admitted;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,49 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import io.opentracing.SpanContext;
+
+/**
+ * Admission control stage invoked by {@link TracingFilter} after the upstream span context has been extracted
+ * and before the request enters the filter chain. It can be registered via
+ * {@link ServletContext#setAttribute(String, Object)} with key {@link TracingFilter#ADMISSION_CONTROL}.
+ *
+ * Implementations can use baggage of the extracted context (e.g. priority or deadline) to reject requests
+ * early when the node is overloaded. Implementations have to be thread safe.
+ */
+public interface AdmissionControl {
+
+    /**
+     * Decide whether the request should be processed.
+     *
+     * @param httpServletRequest request
+     * @param extractedContext context extracted from the request, null if not present or if the request is not
+     *                         traced because {@link TracingGovernor} degraded to metrics only
+     * @return {@link Admission#ADMIT} or a rejection
+     */
+    Admission admit(HttpServletRequest httpServletRequest, SpanContext extractedContext);
+
+    /**
+     * Called once an admitted request has been processed. For async requests this is called in
+     * {@link javax.servlet.AsyncListener#onComplete(javax.servlet.AsyncEvent)}.
+     *
+     * @param httpServletRequest request
+     */
+    void release(HttpServletRequest httpServletRequest);
+}
@@ -0,0 +1,89 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+
+/**
+ * What {@link TracingFilter} does with the span of an async request after
+ * {@link AsyncListener#onTimeout(javax.servlet.AsyncEvent)}. Span decorators are notified in all cases.
+ * <ul>
+ *     <li>{@link #markAndWait()} keeps the span open until the request completes, the default</li>
+ *     <li>{@link #finishOnTimeout()} finishes the span right away</li>
+ *     <li>{@link #finishAfter(long, TimeUnit)} finishes the span if the request does not complete within a grace
+ *     period, expiry is tracked by a single timer thread shared by all filters</li>
+ * </ul>
+ * Once the span is finished, completion of the request is ignored and the filter releases its references to
+ * the span and decorators, even if the container keeps the listener.
+ *
+ * Register an instance via {@link ServletContext#setAttribute(String, Object)} with key
+ * {@link TracingFilter#ASYNC_TIMEOUT_POLICY}.
+ */
+public final class AsyncTimeoutPolicy {
+
+    private static final AsyncTimeoutPolicy MARK_AND_WAIT = new AsyncTimeoutPolicy(-1);
+    private static final AsyncTimeoutPolicy FINISH_ON_TIMEOUT = new AsyncTimeoutPolicy(0);
+
+    private final long gracePeriodNanos;
+
+    private AsyncTimeoutPolicy(long gracePeriodNanos) {
+        this.gracePeriodNanos = gracePeriodNanos;
+    }
+
+    /**
+     * @return policy keeping the span open until the request completes
+     */
+    public static AsyncTimeoutPolicy markAndWait() {
+        return MARK_AND_WAIT;
+    }
+
+    /**
+     * @return policy finishing the span on timeout
+     */
+    public static AsyncTimeoutPolicy finishOnTimeout() {
+        return FINISH_ON_TIMEOUT;
+    }
+
+    /**
+     * @param gracePeriod time to wait for completion after the timeout
+     * @param unit unit of gracePeriod
+     * @return policy finishing the span if the request does not complete within the grace period
+     */
+    public static AsyncTimeoutPolicy finishAfter(long gracePeriod, TimeUnit unit) {
+        if (gracePeriod <= 0) {
+            throw new IllegalArgumentException("gracePeriod must be positive");
+        }
+        return new AsyncTimeoutPolicy(unit.toNanos(gracePeriod));
+    }
+
+    /**
+     * @return grace period in nanoseconds, 0 to finish on timeout or -1 to wait for completion
+     */
+    long gracePeriodNanos() {
+        return gracePeriodNanos;
+    }
+
+    @Override
+    public String toString() {
+        if (gracePeriodNanos < 0) {
+            return "markAndWait";
+        }
+        return gracePeriodNanos == 0 ? "finishOnTimeout"
+                : "finishAfter(" + TimeUnit.NANOSECONDS.toMillis(gracePeriodNanos) + "ms)";
+    }
+}
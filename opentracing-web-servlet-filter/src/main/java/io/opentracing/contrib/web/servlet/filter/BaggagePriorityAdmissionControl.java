@@ -0,0 +1,119 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import io.opentracing.SpanContext;
+
+/**
+ * {@link AdmissionControl} which sheds load based on the number of in-flight requests and baggage
+ * of the upstream span context.
+ *
+ * <ul>
+ *   <li>Requests with baggage item {@link #DEADLINE_BAGGAGE_KEY} (epoch milliseconds) in the past are rejected
+ *   with 503, the caller has already given up.</li>
+ *   <li>When in-flight requests exceed {@code maxInFlight} all requests are rejected with 503.</li>
+ *   <li>When in-flight requests exceed {@code lowPriorityMaxInFlight} requests with baggage item
+ *   {@link #PRIORITY_BAGGAGE_KEY} lower than {@code minPriorityUnderLoad} are rejected with 429 and
+ *   {@code Retry-After} header.</li>
+ * </ul>
+ */
+public class BaggagePriorityAdmissionControl implements AdmissionControl {
+
+    public static final String PRIORITY_BAGGAGE_KEY = "priority";
+    public static final String DEADLINE_BAGGAGE_KEY = "deadline";
+
+    static final Admission DEADLINE_EXCEEDED =
+            Admission.reject(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "deadline-exceeded");
+    static final Admission OVERLOADED =
+            Admission.reject(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "overloaded");
+    static final Admission LOW_PRIORITY = Admission.defer(429, "low-priority", 1);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int maxInFlight;
+    private final int lowPriorityMaxInFlight;
+    private final int minPriorityUnderLoad;
+    private final int defaultPriority;
+
+    /**
+     * @param maxInFlight maximum number of in-flight requests
+     * @param lowPriorityMaxInFlight number of in-flight requests above which low priority requests are shed
+     * @param minPriorityUnderLoad minimal priority admitted above {@code lowPriorityMaxInFlight}
+     * @param defaultPriority priority of requests without priority baggage item
+     */
+    public BaggagePriorityAdmissionControl(int maxInFlight, int lowPriorityMaxInFlight, int minPriorityUnderLoad,
+            int defaultPriority) {
+        this.maxInFlight = maxInFlight;
+        this.lowPriorityMaxInFlight = lowPriorityMaxInFlight;
+        this.minPriorityUnderLoad = minPriorityUnderLoad;
+        this.defaultPriority = defaultPriority;
+    }
+
+    @Override
+    public Admission admit(HttpServletRequest httpServletRequest, SpanContext extractedContext) {
+        int priority = defaultPriority;
+        if (extractedContext != null) {
+            for (Map.Entry<String, String> baggageItem: extractedContext.baggageItems()) {
+                if (PRIORITY_BAGGAGE_KEY.equals(baggageItem.getKey())) {
+                    priority = parseInt(baggageItem.getValue(), defaultPriority);
+                } else if (DEADLINE_BAGGAGE_KEY.equals(baggageItem.getKey())
+                        && parseLong(baggageItem.getValue(), Long.MAX_VALUE) < System.currentTimeMillis()) {
+                    return DEADLINE_EXCEEDED;
+                }
+            }
+        }
+
+        int current = inFlight.incrementAndGet();
+        if (current > maxInFlight) {
+            inFlight.decrementAndGet();
+            return OVERLOADED;
+        }
+        if (current > lowPriorityMaxInFlight && priority < minPriorityUnderLoad) {
+            inFlight.decrementAndGet();
+            return LOW_PRIORITY;
+        }
+        return Admission.ADMIT;
+    }
+
+    @Override
+    public void release(HttpServletRequest httpServletRequest) {
+        inFlight.decrementAndGet();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.tag.Tag;
+import io.opentracing.tag.Tags;
+
+/**
+ * Request scoped span facade handed to span decorators. Tags and logs are recorded in reusable arrays and
+ * applied to the server span in one batch right before it is finished. Many tracers synchronize every
+ * {@code setTag} and {@code log} call, batching takes these locks once per request.
+ *
+ * {@link Tags#SAMPLING_PRIORITY}, baggage and operation name are applied immediately. If sampling priority
+ * is set to 0 through this facade recorded tags and logs are dropped. Logs without timestamp are recorded
+ * with the current time, log fields must not be modified after they were passed to the span.
+ *
+ * Instances are pooled, the facade must not be used after {@link #finish()}.
+ */
+final class BufferedSpan implements Span {
+    private static final int INITIAL_CAPACITY = 8;
+    // instances which grew above this size are not pooled
+    private static final int MAX_POOLED_CAPACITY = 64;
+    private static final ObjectPool<BufferedSpan> POOL = new ObjectPool<>(256);
+
+    private Span delegate;
+    private boolean unsampled;
+
+    // key is a String or Tag
+    private Object[] tagKeys = new Object[INITIAL_CAPACITY];
+    private Object[] tagValues = new Object[INITIAL_CAPACITY];
+    private int tagCount;
+
+    // event is a Map or String
+    private long[] logTimestamps = new long[INITIAL_CAPACITY];
+    private Object[] logEvents = new Object[INITIAL_CAPACITY];
+    private int logCount;
+
+    private BufferedSpan() {
+    }
+
+    /**
+     * @param delegate span to which the recorded tags and logs are applied
+     * @return pooled or new facade
+     */
+    static BufferedSpan of(Span delegate) {
+        BufferedSpan span = POOL.acquire();
+        if (span == null) {
+            span = new BufferedSpan();
+        }
+        span.delegate = delegate;
+        return span;
+    }
+
+    /**
+     * Applies recorded tags and logs to the delegate unless the span was marked as unsampled.
+     */
+    void flush() {
+        if (!unsampled) {
+            for (int i = 0; i < tagCount; i++) {
+                applyTag(tagKeys[i], tagValues[i]);
+            }
+            for (int i = 0; i < logCount; i++) {
+                applyLog(logTimestamps[i], logEvents[i]);
+            }
+        }
+        Arrays.fill(tagKeys, 0, tagCount, null);
+        Arrays.fill(tagValues, 0, tagCount, null);
+        Arrays.fill(logEvents, 0, logCount, null);
+        tagCount = 0;
+        logCount = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void applyTag(Object key, Object value) {
+        if (key instanceof Tag) {
+            delegate.setTag((Tag<Object>) key, value);
+        } else if (value instanceof String) {
+            delegate.setTag((String) key, (String) value);
+        } else if (value instanceof Boolean) {
+            delegate.setTag((String) key, (Boolean) value);
+        } else {
+            delegate.setTag((String) key, (Number) value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void applyLog(long timestampMicros, Object event) {
+        if (event instanceof Map) {
+            delegate.log(timestampMicros, (Map<String, ?>) event);
+        } else {
+            delegate.log(timestampMicros, (String) event);
+        }
+    }
+
+    private BufferedSpan recordTag(Object key, Object value) {
+        if (tagCount == tagKeys.length) {
+            tagKeys = Arrays.copyOf(tagKeys, tagCount * 2);
+            tagValues = Arrays.copyOf(tagValues, tagCount * 2);
+        }
+        tagKeys[tagCount] = key;
+        tagValues[tagCount] = value;
+        tagCount++;
+        return this;
+    }
+
+    private BufferedSpan recordLog(long timestampMicros, Object event) {
+        if (logCount == logEvents.length) {
+            logTimestamps = Arrays.copyOf(logTimestamps, logCount * 2);
+            logEvents = Arrays.copyOf(logEvents, logCount * 2);
+        }
+        logTimestamps[logCount] = timestampMicros;
+        logEvents[logCount] = event;
+        logCount++;
+        return this;
+    }
+
+    private static long nowMicros() {
+        return System.currentTimeMillis() * 1000;
+    }
+
+    @Override
+    public SpanContext context() {
+        return delegate.context();
+    }
+
+    @Override
+    public Span setTag(String key, String value) {
+        return recordTag(key, value);
+    }
+
+    @Override
+    public Span setTag(String key, boolean value) {
+        return recordTag(key, value);
+    }
+
+    @Override
+    public Span setTag(String key, Number value) {
+        if (Tags.SAMPLING_PRIORITY.getKey().equals(key)) {
+            unsampled = value != null && value.intValue() <= 0;
+            delegate.setTag(key, value);
+            return this;
+        }
+        return recordTag(key, value);
+    }
+
+    @Override
+    public <T> Span setTag(Tag<T> tag, T value) {
+        if (Tags.SAMPLING_PRIORITY.getKey().equals(tag.getKey())) {
+            unsampled = value instanceof Number && ((Number) value).intValue() <= 0;
+            delegate.setTag(tag, value);
+            return this;
+        }
+        return recordTag(tag, value);
+    }
+
+    @Override
+    public Span log(Map<String, ?> fields) {
+        return recordLog(nowMicros(), fields);
+    }
+
+    @Override
+    public Span log(long timestampMicroseconds, Map<String, ?> fields) {
+        return recordLog(timestampMicroseconds, fields);
+    }
+
+    @Override
+    public Span log(String event) {
+        return recordLog(nowMicros(), event);
+    }
+
+    @Override
+    public Span log(long timestampMicroseconds, String event) {
+        return recordLog(timestampMicroseconds, event);
+    }
+
+    @Override
+    public Span setBaggageItem(String key, String value) {
+        delegate.setBaggageItem(key, value);
+        return this;
+    }
+
+    @Override
+    public String getBaggageItem(String key) {
+        return delegate.getBaggageItem(key);
+    }
+
+    @Override
+    public Span setOperationName(String operationName) {
+        delegate.setOperationName(operationName);
+        return this;
+    }
+
+    @Override
+    public void finish() {
+        flush();
+        Span span = release();
+        span.finish();
+    }
+
+    @Override
+    public void finish(long finishMicros) {
+        flush();
+        Span span = release();
+        span.finish(finishMicros);
+    }
+
+    private Span release() {
+        Span span = delegate;
+        delegate = null;
+        unsampled = false;
+        if (tagKeys.length <= MAX_POOLED_CAPACITY && logEvents.length <= MAX_POOLED_CAPACITY) {
+            POOL.release(this);
+        }
+        return span;
+    }
+}
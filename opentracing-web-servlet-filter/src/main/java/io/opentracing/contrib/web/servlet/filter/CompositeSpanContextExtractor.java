@@ -0,0 +1,216 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMap;
+
+/**
+ * Probes {@link PropagationFormat}s in the configured order and extracts span context of the first format present
+ * in the request. Probing reads single headers, all request headers are iterated only for formats with prefixed
+ * baggage. If the tracer returns no context for a present format the next one is probed. Matches are counted
+ * per format, requests without any match are counted in {@link #NO_MATCH}.
+ *
+ * Register an instance via {@link ServletContext#setAttribute(String, Object)} with key
+ * {@link TracingFilter#SPAN_CONTEXT_EXTRACTOR}:
+ * <pre>
+ * {@code
+ *  servletContext.setAttribute(TracingFilter.SPAN_CONTEXT_EXTRACTOR, CompositeSpanContextExtractor.builder()
+ *      .probe(PropagationFormat.W3C, new TraceParentExtractor())
+ *      .probe(PropagationFormat.B3)
+ *      .probe(PropagationFormat.JAEGER)
+ *      .build());
+ * }
+ * </pre>
+ */
+public final class CompositeSpanContextExtractor implements SpanContextExtractor {
+
+    public static final String NO_MATCH = "none";
+
+    private final PropagationFormat[] formats;
+    private final SpanContextExtractor[] extractors;
+    private final StripedCounter[] matches;
+    private final StripedCounter noMatch = new StripedCounter();
+    private final SpanContextExtractor fallback;
+
+    private CompositeSpanContextExtractor(Builder builder) {
+        this.formats = builder.formats.toArray(new PropagationFormat[0]);
+        this.extractors = builder.extractors.toArray(new SpanContextExtractor[0]);
+        this.matches = new StripedCounter[formats.length];
+        for (int i = 0; i < matches.length; i++) {
+            matches[i] = new StripedCounter();
+        }
+        this.fallback = builder.fallback;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public SpanContext extract(Tracer tracer, HttpServletRequest httpServletRequest, TextMap headers) {
+        for (int i = 0; i < formats.length; i++) {
+            PropagationFormat format = formats[i];
+            if (!isPresent(httpServletRequest, format)) {
+                continue;
+            }
+            SpanContext spanContext;
+            if (extractors[i] != null) {
+                spanContext = extractors[i].extract(tracer, httpServletRequest, headers);
+            } else if (format.baggagePrefix() != null) {
+                spanContext = tracer.extract(Format.Builtin.HTTP_HEADERS, headers);
+            } else {
+                spanContext = tracer.extract(Format.Builtin.HTTP_HEADERS,
+                        new FormatHeadersCarrier(httpServletRequest, format.headers()));
+            }
+            if (spanContext != null) {
+                matches[i].add(1);
+                return spanContext;
+            }
+        }
+        noMatch.add(1);
+        return fallback != null ? fallback.extract(tracer, httpServletRequest, headers) : null;
+    }
+
+    /**
+     * @return number of requests per matched format name and {@link #NO_MATCH}
+     */
+    public Map<String, Long> matches() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        for (int i = 0; i < formats.length; i++) {
+            snapshot.put(formats[i].getName(), matches[i].sum());
+        }
+        snapshot.put(NO_MATCH, noMatch.sum());
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private static boolean isPresent(HttpServletRequest httpServletRequest, PropagationFormat format) {
+        for (String header: format.probeHeaders()) {
+            if (httpServletRequest.getHeader(header) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Carrier with the first values of headers of a single format.
+     */
+    private static final class FormatHeadersCarrier implements TextMap, Iterator<Map.Entry<String, String>> {
+        private final HttpServletRequest request;
+        private final String[] headers;
+        private int index;
+        private String value;
+
+        private FormatHeadersCarrier(HttpServletRequest request, String[] headers) {
+            this.request = request;
+            this.headers = headers;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, String>> iterator() {
+            index = 0;
+            value = null;
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (value == null && index < headers.length) {
+                value = request.getHeader(headers[index++]);
+            }
+            return value != null;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, String> entry = new AbstractMap.SimpleImmutableEntry<>(headers[index - 1], value);
+            value = null;
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void put(String key, String value) {
+            throw new UnsupportedOperationException("This class should be used only with Tracer.extract()!");
+        }
+    }
+
+    public static final class Builder {
+        private final List<PropagationFormat> formats = new ArrayList<>();
+        private final List<SpanContextExtractor> extractors = new ArrayList<>();
+        private SpanContextExtractor fallback;
+
+        private Builder() {
+        }
+
+        /**
+         * Probes format and extracts its headers with {@link Format.Builtin#HTTP_HEADERS}.
+         *
+         * @param format format
+         * @return builder
+         */
+        public Builder probe(PropagationFormat format) {
+            return probe(format, null);
+        }
+
+        /**
+         * @param format format
+         * @param extractor extractor used if the format is present, null to extract with
+         *                  {@link Format.Builtin#HTTP_HEADERS}
+         * @return builder
+         */
+        public Builder probe(PropagationFormat format, SpanContextExtractor extractor) {
+            formats.add(format);
+            extractors.add(extractor);
+            return this;
+        }
+
+        /**
+         * @param fallback extractor used if no format matched e.g. {@link SpanContextExtractor#HTTP_HEADERS},
+         *                 by default no context is extracted
+         * @return builder
+         */
+        public Builder fallback(SpanContextExtractor fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
+        public CompositeSpanContextExtractor build() {
+            return new CompositeSpanContextExtractor(this);
+        }
+    }
+}
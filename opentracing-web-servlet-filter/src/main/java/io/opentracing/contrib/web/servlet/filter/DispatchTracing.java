@@ -0,0 +1,39 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletContext;
+
+/**
+ * How {@link TracingFilter} handles {@link DispatcherType#FORWARD}, {@link DispatcherType#INCLUDE} and
+ * {@link DispatcherType#ERROR} dispatches of an already traced request. Set via
+ * {@link ServletContext#setAttribute(String, Object)} with key {@link TracingFilter#DISPATCH_TRACING}.
+ */
+public enum DispatchTracing {
+    /**
+     * Dispatches are not traced, default.
+     */
+    NONE,
+    /**
+     * Dispatch is traced as a child span of the active span, e.g. server span or span of the enclosing
+     * dispatch. Operation name is the dispatcher type.
+     */
+    SPAN,
+    /**
+     * Dispatch is recorded as a log of the active span with dispatcher type, path and duration.
+     */
+    LOG
+}
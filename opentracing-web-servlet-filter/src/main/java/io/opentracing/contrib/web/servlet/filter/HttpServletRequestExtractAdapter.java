@@ -20,6 +20,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
@@ -29,19 +30,56 @@ import io.opentracing.propagation.TextMap;
 /**
  * Tracer extract adapter for {@link HttpServletRequest}.
  *
+ * By default every iterated header value is a new entry. With {@code reuseEntries} the iterator returns the
+ * same mutable entry updated in place, which avoids an allocation per header value. The entry is only valid
+ * until the next call of {@link Iterator#next()}, use this mode only with tracers which read key and value
+ * right away and do not retain the entries.
+ *
  * @author Pavol Loffay
  */
 public class HttpServletRequestExtractAdapter implements TextMap {
 
     private Map<String, List<String>> headers;
+    private RequestHeadersIterator requestHeadersIterator;
+    private boolean reuseEntries;
 
     public HttpServletRequestExtractAdapter(HttpServletRequest httpServletRequest) {
+        this(httpServletRequest, false);
+    }
+
+    /**
+     * @param httpServletRequest request
+     * @param reuseEntries whether iterator returns the same mutable entry for all header values
+     */
+    public HttpServletRequestExtractAdapter(HttpServletRequest httpServletRequest, boolean reuseEntries) {
         headers = servletHeadersToMultiMap(httpServletRequest);
+        this.reuseEntries = reuseEntries;
+    }
+
+    /**
+     * Creates a reusable adapter which reads headers of the request set by {@link #reset(HttpServletRequest)}
+     * lazily while iterating. The iterator is reused as well, only one iteration can be in progress.
+     *
+     * @param reuseEntries whether iterator returns the same mutable entry for all header values
+     */
+    HttpServletRequestExtractAdapter(boolean reuseEntries) {
+        requestHeadersIterator = new RequestHeadersIterator(reuseEntries);
+    }
+
+    /**
+     * @param httpServletRequest request to read headers from or null to release the current one
+     */
+    void reset(HttpServletRequest httpServletRequest) {
+        requestHeadersIterator.reset(httpServletRequest);
     }
 
     @Override
     public Iterator<Map.Entry<String, String>> iterator() {
-        return new MultivaluedMapFlatIterator<>(headers.entrySet());
+        if (headers == null) {
+            requestHeadersIterator.rewind();
+            return requestHeadersIterator;
+        }
+        return new MultivaluedMapFlatIterator<>(headers.entrySet(), reuseEntries);
     }
 
     @Override
@@ -68,19 +106,91 @@ public class HttpServletRequestExtractAdapter implements TextMap {
         return headersResult;
     }
 
+    /**
+     * Iterates over header names and values of the request without copying them.
+     */
+    private static final class RequestHeadersIterator implements Iterator<Map.Entry<String, String>> {
+
+        private final MutableEntry<String, String> entry;
+        private HttpServletRequest request;
+        private Enumeration<String> headerNames;
+        private String headerName;
+        private Enumeration<String> headerValues;
+
+        RequestHeadersIterator(boolean reuseEntries) {
+            this.entry = reuseEntries ? new MutableEntry<String, String>() : null;
+        }
+
+        void reset(HttpServletRequest request) {
+            this.request = request;
+            headerNames = null;
+            headerName = null;
+            headerValues = null;
+        }
+
+        void rewind() {
+            headerNames = request != null ? request.getHeaderNames() : null;
+            headerName = null;
+            headerValues = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (headerValues == null || !headerValues.hasMoreElements()) {
+                if (headerNames == null || !headerNames.hasMoreElements()) {
+                    return false;
+                }
+                headerName = headerNames.nextElement();
+                headerValues = request.getHeaders(headerName);
+            }
+            return true;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (entry != null) {
+                return entry.set(headerName, headerValues.nextElement());
+            }
+            return new AbstractMap.SimpleImmutableEntry<>(headerName, headerValues.nextElement());
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Flattens multi-valued map into entries of key and single value.
+     */
     public static final class MultivaluedMapFlatIterator<K, V> implements Iterator<Map.Entry<K, V>> {
 
         private final Iterator<Map.Entry<K, List<V>>> mapIterator;
+        private final MutableEntry<K, V> entry;
         private Map.Entry<K, List<V>> mapEntry;
-        private Iterator<V> listIterator;
+        private List<V> values;
+        private int valueIndex;
 
         public MultivaluedMapFlatIterator(Set<Map.Entry<K, List<V>>> multiValuesEntrySet) {
+            this(multiValuesEntrySet, false);
+        }
+
+        /**
+         * @param multiValuesEntrySet entries of multi-valued map
+         * @param reuseEntries whether {@link #next()} returns the same mutable entry, which is valid only until
+         *                     the next call
+         */
+        public MultivaluedMapFlatIterator(Set<Map.Entry<K, List<V>>> multiValuesEntrySet, boolean reuseEntries) {
             this.mapIterator = multiValuesEntrySet.iterator();
+            this.entry = reuseEntries ? new MutableEntry<K, V>() : null;
         }
 
         @Override
         public boolean hasNext() {
-            if (listIterator != null && listIterator.hasNext()) {
+            if (values != null && valueIndex < values.size()) {
                 return true;
             }
 
@@ -89,16 +199,17 @@ public class HttpServletRequestExtractAdapter implements TextMap {
 
         @Override
         public Map.Entry<K, V> next() {
-            if (mapEntry == null || (!listIterator.hasNext() && mapIterator.hasNext())) {
+            if (mapEntry == null || (valueIndex >= values.size() && mapIterator.hasNext())) {
                 mapEntry = mapIterator.next();
-                listIterator = mapEntry.getValue().iterator();
+                values = mapEntry.getValue();
+                valueIndex = 0;
             }
 
-            if (listIterator.hasNext()) {
-                return new AbstractMap.SimpleImmutableEntry<>(mapEntry.getKey(), listIterator.next());
-            } else {
-                return new AbstractMap.SimpleImmutableEntry<>(mapEntry.getKey(), null);
+            V value = valueIndex < values.size() ? values.get(valueIndex++) : null;
+            if (entry != null) {
+                return entry.set(mapEntry.getKey(), value);
             }
+            return new AbstractMap.SimpleImmutableEntry<>(mapEntry.getKey(), value);
         }
 
         @Override
@@ -106,4 +217,53 @@ public class HttpServletRequestExtractAdapter implements TextMap {
             throw new UnsupportedOperationException();
         }
     }
+
+    /**
+     * Entry updated in place by iterators reusing entries.
+     */
+    private static final class MutableEntry<K, V> implements Map.Entry<K, V> {
+        private K key;
+        private V value;
+
+        MutableEntry<K, V> set(K key, V value) {
+            this.key = key;
+            this.value = value;
+            return this;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return (key == null ? other.getKey() == null : key.equals(other.getKey()))
+                    && (value == null ? other.getValue() == null : value.equals(other.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
 }
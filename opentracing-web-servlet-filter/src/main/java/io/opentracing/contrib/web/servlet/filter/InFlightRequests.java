@@ -0,0 +1,102 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.ServletContext;
+
+/**
+ * Gauge of in-flight requests with per-route breakdown, route is the servlet path of the request. Async
+ * requests are counted until {@link javax.servlet.AsyncListener#onComplete(javax.servlet.AsyncEvent)}.
+ *
+ * Register an instance via {@link ServletContext#setAttribute(String, Object)} with key
+ * {@link TracingFilter#IN_FLIGHT_REQUESTS}. Counters are striped to avoid contention of request threads,
+ * the number of distinct routes is bounded, requests of other routes are counted in {@link #OTHER_ROUTE}.
+ */
+public class InFlightRequests {
+
+    public static final String OTHER_ROUTE = "other";
+
+    private final StripedCounter total = new StripedCounter();
+    private final ConcurrentMap<String, StripedCounter> routes = new ConcurrentHashMap<>();
+    private final StripedCounter other = new StripedCounter();
+    private final int maxRoutes;
+
+    public InFlightRequests() {
+        this(256);
+    }
+
+    /**
+     * @param maxRoutes maximum number of distinct routes
+     */
+    public InFlightRequests(int maxRoutes) {
+        this.maxRoutes = maxRoutes;
+    }
+
+    /**
+     * @return number of all in-flight requests
+     */
+    public long get() {
+        return total.sum();
+    }
+
+    /**
+     * @param route route
+     * @return number of in-flight requests of a route
+     */
+    public long get(String route) {
+        StripedCounter counter = routes.get(route);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * @return snapshot of in-flight requests per route
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, StripedCounter> entry: routes.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().sum());
+        }
+        snapshot.put(OTHER_ROUTE, other.sum());
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    StripedCounter total() {
+        return total;
+    }
+
+    StripedCounter route(String route) {
+        if (route == null) {
+            return other;
+        }
+        StripedCounter counter = routes.get(route);
+        if (counter == null) {
+            if (routes.size() >= maxRoutes) {
+                return other;
+            }
+            StripedCounter newCounter = new StripedCounter();
+            counter = routes.putIfAbsent(route, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,72 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free pool of reusable objects. Both {@link #acquire()} and {@link #release(Object)} probe a few
+ * slots starting at an index derived from the current thread, so a thread mostly reuses its own objects and
+ * threads rarely compete for a slot. An empty or full pool never blocks: acquire returns {@code null} and
+ * release drops the object.
+ */
+final class ObjectPool<T> {
+    private static final int PROBES = 8;
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+
+    /**
+     * @param capacity maximum number of pooled objects, rounded up to a power of two
+     */
+    ObjectPool(int capacity) {
+        int size = PROBES;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return pooled object or null if none was found
+     */
+    T acquire() {
+        int start = (int) Thread.currentThread().getId();
+        for (int i = 0; i < PROBES; i++) {
+            int index = (start + i) & mask;
+            T item = slots.get(index);
+            if (item != null && slots.compareAndSet(index, item, null)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param item object to return to the pool, it must not be used by the caller afterwards
+     * @return false if the object was dropped because the pool is full
+     */
+    boolean release(T item) {
+        int start = (int) Thread.currentThread().getId();
+        for (int i = 0; i < PROBES; i++) {
+            int index = (start + i) & mask;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Header based propagation format probed by {@link CompositeSpanContextExtractor}. A format matches a request
+ * if any of its probe headers is present. Span context is then extracted from its headers only, unless it
+ * propagates baggage in prefixed headers which requires iteration over all request headers.
+ */
+public final class PropagationFormat {
+
+    /**
+     * Zipkin B3, multi and single header
+     */
+    public static final PropagationFormat B3 = new PropagationFormat("b3",
+            Arrays.asList("b3", "X-B3-TraceId"),
+            Arrays.asList("b3", "X-B3-TraceId", "X-B3-SpanId", "X-B3-ParentSpanId", "X-B3-Sampled", "X-B3-Flags"),
+            null);
+    /**
+     * Jaeger {@code uber-trace-id} with {@code uberctx-} baggage
+     */
+    public static final PropagationFormat JAEGER = new PropagationFormat("jaeger",
+            Arrays.asList("uber-trace-id"),
+            Arrays.asList("uber-trace-id", "jaeger-debug-id", "jaeger-baggage"),
+            "uberctx-");
+    /**
+     * W3C trace context and baggage
+     */
+    public static final PropagationFormat W3C = new PropagationFormat("w3c",
+            Arrays.asList(TraceParent.TRACE_PARENT_HEADER),
+            Arrays.asList(TraceParent.TRACE_PARENT_HEADER, TraceParent.TRACE_STATE_HEADER, "baggage"),
+            null);
+
+    private final String name;
+    private final String[] probeHeaders;
+    private final String[] headers;
+    private final String baggagePrefix;
+
+    /**
+     * @param name name of the format used in match counts
+     * @param probeHeaders headers indicating presence of the format
+     * @param headers all headers of the format
+     * @param baggagePrefix prefix of baggage headers or null
+     */
+    public PropagationFormat(String name, List<String> probeHeaders, List<String> headers, String baggagePrefix) {
+        this.name = name;
+        this.probeHeaders = probeHeaders.toArray(new String[0]);
+        this.headers = headers.toArray(new String[0]);
+        this.baggagePrefix = baggagePrefix;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    String[] probeHeaders() {
+        return probeHeaders;
+    }
+
+    String[] headers() {
+        return headers;
+    }
+
+    String baggagePrefix() {
+        return baggagePrefix;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,102 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Server span captured by {@link SpanRecorder}.
+ */
+public final class RecordedSpan {
+
+    private final long sequence;
+    private final long startEpochMicros;
+    private final long durationNanos;
+    private final String traceId;
+    private final String spanId;
+    private final String method;
+    private final String path;
+    private final int status;
+    private final boolean error;
+
+    RecordedSpan(long sequence, long startEpochMicros, long durationNanos, String traceId, String spanId,
+            String method, String path, int status, boolean error) {
+        this.sequence = sequence;
+        this.startEpochMicros = startEpochMicros;
+        this.durationNanos = durationNanos;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.method = method;
+        this.path = path;
+        this.status = status;
+        this.error = error;
+    }
+
+    /**
+     * @return number of spans recorded before this one
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getStartEpochMicros() {
+        return startEpochMicros;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return request URI without query string
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return sequence + " " + format.format(new Date(startEpochMicros / 1000))
+                + " " + (durationNanos / 1000) + "us"
+                + " " + status + (error ? " error" : "")
+                + " " + method + " " + path
+                + " " + traceId + " " + spanId;
+    }
+}
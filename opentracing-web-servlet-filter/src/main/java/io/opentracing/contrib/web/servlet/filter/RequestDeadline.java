@@ -0,0 +1,120 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletRequest;
+
+/**
+ * Remaining time budget of a request propagated by the upstream service. It is based on
+ * {@link System#nanoTime()} hence not affected by wall clock changes.
+ *
+ * Deadline is accessible via {@link ServletRequest#getAttribute(String)} with name
+ * {@link TracingFilter#REQUEST_DEADLINE} or {@link TracingFilter#requestDeadline(ServletRequest)}.
+ */
+public final class RequestDeadline {
+
+    /**
+     * Budgets are clamped to one year so that the deadline does not overflow {@link System#nanoTime()} arithmetic.
+     */
+    static final long MAX_BUDGET_NANOS = TimeUnit.DAYS.toNanos(365);
+
+    private final long budgetNanos;
+    private final long deadlineNanos;
+
+    RequestDeadline(long startNanos, long budgetNanos) {
+        budgetNanos = Math.max(-MAX_BUDGET_NANOS, Math.min(budgetNanos, MAX_BUDGET_NANOS));
+        this.budgetNanos = budgetNanos;
+        this.deadlineNanos = startNanos + budgetNanos;
+    }
+
+    /**
+     * @return budget received from upstream in nanoseconds, at most one year
+     */
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    /**
+     * @return remaining time in nanoseconds, negative if the deadline has been exceeded
+     */
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    /**
+     * @param unit time unit
+     * @return remaining time in given unit, negative if the deadline has been exceeded
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(remainingNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    /**
+     * Parses relative timeout. Value is either a number of milliseconds e.g. {@code 250} or
+     * <a href="https://github.com/grpc/grpc/blob/master/doc/PROTOCOL-HTTP2.md">grpc-timeout</a> format e.g.
+     * {@code 250m}, where unit is one of {@code H}, {@code M}, {@code S}, {@code m}, {@code u}, {@code n}.
+     *
+     * @param value header value
+     * @return timeout in nanoseconds or -1 if the value is not valid
+     */
+    static long parseTimeoutNanos(String value) {
+        int length = value.length();
+        if (length == 0 || length > 19) {
+            return -1;
+        }
+
+        long number = 0;
+        int i = 0;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            number = number * 10 + (c - '0');
+        }
+        if (i == 0) {
+            return -1;
+        }
+        if (i == length) {
+            return TimeUnit.MILLISECONDS.toNanos(number);
+        }
+        if (i != length - 1) {
+            return -1;
+        }
+
+        switch (value.charAt(i)) {
+            case 'H':
+                return TimeUnit.HOURS.toNanos(number);
+            case 'M':
+                return TimeUnit.MINUTES.toNanos(number);
+            case 'S':
+                return TimeUnit.SECONDS.toNanos(number);
+            case 'm':
+                return TimeUnit.MILLISECONDS.toNanos(number);
+            case 'u':
+                return TimeUnit.MICROSECONDS.toNanos(number);
+            case 'n':
+                return number;
+            default:
+                return -1;
+        }
+    }
+}
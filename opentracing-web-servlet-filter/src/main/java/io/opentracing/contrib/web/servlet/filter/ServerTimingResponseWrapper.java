@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import io.opentracing.SpanContext;
+
+/**
+ * Response wrapper which adds {@code Server-Timing} and/or {@code traceresponse} headers right before the
+ * response is committed.
+ *
+ * Headers are written when the application first obtains the output stream or writer, flushes the buffer,
+ * sends an error or a redirect. If none of these happens they are written by {@link TracingFilter} once
+ * the filter chain returns. The reported duration is therefore the time spent in the filter until the
+ * response body started.
+ *
+ * Async requests get the headers only if the application passes the wrapped response to
+ * {@link javax.servlet.ServletRequest#startAsync(javax.servlet.ServletRequest, javax.servlet.ServletResponse)}.
+ * The no-argument {@link javax.servlet.ServletRequest#startAsync()} continues with the response seen by the
+ * container, which bypasses this wrapper, so no headers are written.
+ *
+ * {@code traceresponse} is written only if the tracer uses W3C trace context ids, 32 and 16 lowercase hex
+ * characters.
+ */
+public class ServerTimingResponseWrapper extends HttpServletResponseWrapper {
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+    public static final String TRACE_RESPONSE_HEADER = "traceresponse";
+
+    private final long startNanos;
+    private final SpanContext spanContext;
+    private final boolean serverTiming;
+    private final boolean traceResponse;
+    private final boolean sampled;
+    private boolean headersWritten;
+
+    /**
+     * @param response response to wrap
+     * @param startNanos {@link System#nanoTime()} at the beginning of the request processing
+     * @param spanContext context of the server span
+     * @param serverTiming whether to add {@code Server-Timing} header
+     * @param traceResponse whether to add {@code traceresponse} header
+     */
+    public ServerTimingResponseWrapper(HttpServletResponse response, long startNanos, SpanContext spanContext,
+            boolean serverTiming, boolean traceResponse) {
+        this(response, startNanos, spanContext, serverTiming, traceResponse, true);
+    }
+
+    /**
+     * @param response response to wrap
+     * @param startNanos {@link System#nanoTime()} at the beginning of the request processing
+     * @param spanContext context of the server span
+     * @param serverTiming whether to add {@code Server-Timing} header
+     * @param traceResponse whether to add {@code traceresponse} header
+     * @param sampled sampled flag of {@code traceresponse} header
+     */
+    public ServerTimingResponseWrapper(HttpServletResponse response, long startNanos, SpanContext spanContext,
+            boolean serverTiming, boolean traceResponse, boolean sampled) {
+        super(response);
+        this.startNanos = startNanos;
+        this.spanContext = spanContext;
+        this.serverTiming = serverTiming;
+        this.traceResponse = traceResponse;
+        this.sampled = sampled;
+    }
+
+    /**
+     * Writes the headers if they have not been written yet and response is not committed.
+     */
+    public void writeHeaders() {
+        if (headersWritten) {
+            return;
+        }
+        headersWritten = true;
+        if (isCommitted()) {
+            return;
+        }
+
+        if (serverTiming) {
+            addHeader(SERVER_TIMING_HEADER, serverTimingValue(System.nanoTime() - startNanos));
+        }
+        if (traceResponse) {
+            String value = traceResponseValue(spanContext.toTraceId(), spanContext.toSpanId(), sampled);
+            if (value != null) {
+                setHeader(TRACE_RESPONSE_HEADER, value);
+            }
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        writeHeaders();
+        return super.getOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        writeHeaders();
+        return super.getWriter();
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        writeHeaders();
+        super.flushBuffer();
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        writeHeaders();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        writeHeaders();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        writeHeaders();
+        super.sendRedirect(location);
+    }
+
+    /**
+     * @return {@code traceresponse} value or null if ids are not valid W3C trace context ids
+     */
+    static String traceResponseValue(String traceId, String spanId, boolean sampled) {
+        if (!isHexId(traceId, 32) || !isHexId(spanId, 16)) {
+            return null;
+        }
+        return new StringBuilder(55)
+                .append("00-")
+                .append(traceId)
+                .append('-')
+                .append(spanId)
+                .append(sampled ? "-01" : "-00")
+                .toString();
+    }
+
+    /**
+     * @return whether id has the length, consists of lowercase hex characters and is not all zeros
+     */
+    private static boolean isHexId(String id, int length) {
+        if (id == null || id.length() != length) {
+            return false;
+        }
+        boolean nonZero = false;
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+            nonZero |= c != '0';
+        }
+        return nonZero;
+    }
+
+    /**
+     * Formats duration as {@code total;dur=<milliseconds>} with microsecond precision.
+     */
+    static String serverTimingValue(long durationNanos) {
+        long micros = durationNanos / 1000;
+        long fraction = micros % 1000;
+        StringBuilder sb = new StringBuilder(24)
+                .append("total;dur=")
+                .append(micros / 1000)
+                .append('.');
+        if (fraction < 100) {
+            sb.append('0');
+        }
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction).toString();
+    }
+}
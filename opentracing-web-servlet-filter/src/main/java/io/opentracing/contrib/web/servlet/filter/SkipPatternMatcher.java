@@ -0,0 +1,74 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches skip pattern against the request URI without the context path, without creating the substring or a
+ * new {@link Matcher} per request. Instances are not thread safe, {@link TracingFilter} keeps them in a pool.
+ */
+final class SkipPatternMatcher implements CharSequence {
+
+    private final Pattern pattern;
+    private final Matcher matcher;
+    private String uri;
+    private int offset;
+
+    SkipPatternMatcher(Pattern pattern) {
+        this.pattern = pattern;
+        this.matcher = pattern.matcher("");
+    }
+
+    Pattern pattern() {
+        return pattern;
+    }
+
+    /**
+     * @param uri request URI
+     * @param offset length of the context path
+     * @return whether the URI without context path matches the pattern
+     */
+    boolean matches(String uri, int offset) {
+        this.uri = uri;
+        this.offset = offset;
+        try {
+            return matcher.reset(this).matches();
+        } finally {
+            this.uri = null;
+        }
+    }
+
+    @Override
+    public int length() {
+        return uri.length() - offset;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return uri.charAt(offset + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return uri.substring(offset + start, offset + end);
+    }
+
+    @Override
+    public String toString() {
+        return uri.substring(offset);
+    }
+}
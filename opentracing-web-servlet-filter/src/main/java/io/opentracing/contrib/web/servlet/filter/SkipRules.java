@@ -0,0 +1,202 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Rules excluding requests from tracing by HTTP method, request headers or {@link DispatcherType}. Rules are
+ * evaluated with set lookups and plain string comparisons, no regular expressions are involved.
+ *
+ * Register an instance via {@link ServletContext#setAttribute(String, Object)} with key
+ * {@link TracingFilter#SKIP_RULES}:
+ * <pre>
+ * {@code
+ *  servletContext.setAttribute(TracingFilter.SKIP_RULES, SkipRules.builder()
+ *      .skipMethods("OPTIONS", "HEAD")
+ *      .skipIfHeaderPresent("X-Internal-Probe")
+ *      .skipIfHeaderStartsWith("User-Agent", "kube-probe/")
+ *      .build());
+ * }
+ * </pre>
+ */
+public final class SkipRules {
+
+    private final Set<String> methods;
+    private final EnumSet<DispatcherType> dispatcherTypes;
+    private final HeaderRule[] headerRules;
+
+    private SkipRules(Builder builder) {
+        this.methods = new HashSet<>(builder.methods);
+        this.dispatcherTypes = EnumSet.copyOf(builder.dispatcherTypes);
+        List<HeaderRule> headerRules = new ArrayList<>(builder.headerRules.size());
+        for (HeaderRule.Builder headerRule: builder.headerRules.values()) {
+            headerRules.add(headerRule.build());
+        }
+        this.headerRules = headerRules.toArray(new HeaderRule[0]);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param httpServletRequest request
+     * @return whether the request should not be traced
+     */
+    public boolean skip(HttpServletRequest httpServletRequest) {
+        if (!dispatcherTypes.isEmpty() && dispatcherTypes.contains(httpServletRequest.getDispatcherType())) {
+            return true;
+        }
+        if (!methods.isEmpty() && methods.contains(httpServletRequest.getMethod())) {
+            return true;
+        }
+        for (HeaderRule headerRule: headerRules) {
+            if (headerRule.matches(httpServletRequest.getHeader(headerRule.header))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class HeaderRule {
+        private final String header;
+        private final boolean anyValue;
+        private final Set<String> values;
+        private final String[] prefixes;
+
+        private HeaderRule(String header, boolean anyValue, Set<String> values, String[] prefixes) {
+            this.header = header;
+            this.anyValue = anyValue;
+            this.values = values;
+            this.prefixes = prefixes;
+        }
+
+        boolean matches(String value) {
+            if (value == null) {
+                return false;
+            }
+            if (anyValue || values.contains(value)) {
+                return true;
+            }
+            for (String prefix: prefixes) {
+                if (value.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static final class Builder {
+            private final String header;
+            private boolean anyValue;
+            private final Set<String> values = new HashSet<>();
+            private final List<String> prefixes = new ArrayList<>();
+
+            private Builder(String header) {
+                this.header = header;
+            }
+
+            private HeaderRule build() {
+                return new HeaderRule(header, anyValue, new HashSet<>(values), prefixes.toArray(new String[0]));
+            }
+        }
+    }
+
+    public static final class Builder {
+        private final Set<String> methods = new HashSet<>();
+        private final Set<DispatcherType> dispatcherTypes = EnumSet.noneOf(DispatcherType.class);
+        private final Map<String, HeaderRule.Builder> headerRules = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param methods HTTP methods e.g. OPTIONS, HEAD
+         * @return builder
+         */
+        public Builder skipMethods(String... methods) {
+            for (String method: methods) {
+                this.methods.add(method.toUpperCase(Locale.ROOT));
+            }
+            return this;
+        }
+
+        /**
+         * @param dispatcherTypes dispatcher types
+         * @return builder
+         */
+        public Builder skipDispatcherTypes(DispatcherType... dispatcherTypes) {
+            this.dispatcherTypes.addAll(Arrays.asList(dispatcherTypes));
+            return this;
+        }
+
+        /**
+         * @param header header name
+         * @return builder
+         */
+        public Builder skipIfHeaderPresent(String header) {
+            headerRule(header).anyValue = true;
+            return this;
+        }
+
+        /**
+         * @param header header name
+         * @param values values of the header
+         * @return builder
+         */
+        public Builder skipIfHeaderEquals(String header, String... values) {
+            Collections.addAll(headerRule(header).values, values);
+            return this;
+        }
+
+        /**
+         * @param header header name
+         * @param prefixes prefixes of the header value e.g. "kube-probe/"
+         * @return builder
+         */
+        public Builder skipIfHeaderStartsWith(String header, String... prefixes) {
+            Collections.addAll(headerRule(header).prefixes, prefixes);
+            return this;
+        }
+
+        public SkipRules build() {
+            return new SkipRules(this);
+        }
+
+        private HeaderRule.Builder headerRule(String header) {
+            String key = header.toLowerCase(Locale.ROOT);
+            HeaderRule.Builder headerRule = headerRules.get(key);
+            if (headerRule == null) {
+                headerRule = new HeaderRule.Builder(header);
+                headerRules.put(key, headerRule);
+            }
+            return headerRule;
+        }
+    }
+}
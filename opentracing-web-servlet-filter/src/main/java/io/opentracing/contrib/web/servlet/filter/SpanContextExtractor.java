@@ -0,0 +1,50 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMap;
+
+/**
+ * Extracts the parent span context of the server span. Set via
+ * {@link ServletContext#setAttribute(String, Object)} with key {@link TracingFilter#SPAN_CONTEXT_EXTRACTOR},
+ * default is {@link #HTTP_HEADERS}.
+ */
+public interface SpanContextExtractor {
+
+    /**
+     * @param tracer tracer
+     * @param httpServletRequest request, single headers can be read via
+     *                           {@link HttpServletRequest#getHeader(String)}
+     * @param headers carrier iterating over all request headers, it is not valid after this method returns
+     * @return extracted span context or null
+     */
+    SpanContext extract(Tracer tracer, HttpServletRequest httpServletRequest, TextMap headers);
+
+    /**
+     * Extracts with {@link Format.Builtin#HTTP_HEADERS} from all request headers.
+     */
+    SpanContextExtractor HTTP_HEADERS = new SpanContextExtractor() {
+        @Override
+        public SpanContext extract(Tracer tracer, HttpServletRequest httpServletRequest, TextMap headers) {
+            return tracer.extract(Format.Builtin.HTTP_HEADERS, headers);
+        }
+    };
+}
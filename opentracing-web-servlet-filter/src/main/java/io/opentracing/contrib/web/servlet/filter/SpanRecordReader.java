@@ -0,0 +1,119 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads spans from a file written by {@link SpanRecorder}, while the recorder is running or after the process
+ * exited. Records being overwritten at the time of reading are skipped.
+ * <pre>
+ * java -cp opentracing-web-servlet-filter.jar io.opentracing.contrib.web.servlet.filter.SpanRecordReader spans.bin
+ * </pre>
+ */
+public final class SpanRecordReader {
+
+    private SpanRecordReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: SpanRecordReader <file>");
+            System.exit(1);
+        }
+        for (RecordedSpan span: read(Paths.get(args[0]))) {
+            System.out.println(span);
+        }
+    }
+
+    /**
+     * @param file file written by {@link SpanRecorder}
+     * @return complete records, oldest first
+     * @throws IOException if the file cannot be read or it is not a span record file
+     */
+    public static List<RecordedSpan> read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < SpanRecorder.HEADER_SIZE || buffer.getInt(0) != SpanRecorder.MAGIC) {
+            throw new IOException(file + " is not a span record file");
+        }
+        if (buffer.getInt(4) != SpanRecorder.VERSION || buffer.getInt(12) != SpanRecorder.RECORD_SIZE) {
+            throw new IOException("Unsupported version " + buffer.getInt(4) + " of " + file);
+        }
+        int capacity = buffer.getInt(8);
+        if (capacity <= 0 || SpanRecorder.HEADER_SIZE + (long) capacity * SpanRecorder.RECORD_SIZE > buffer.limit()) {
+            throw new IOException(file + " is truncated");
+        }
+
+        List<RecordedSpan> spans = new ArrayList<>(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = SpanRecorder.HEADER_SIZE + slot * SpanRecorder.RECORD_SIZE;
+            RecordedSpan span = readRecord(buffer, offset, slot, capacity);
+            if (span != null) {
+                spans.add(span);
+            }
+        }
+        SpanRecorder.sortBySequence(spans);
+        return spans;
+    }
+
+    private static RecordedSpan readRecord(ByteBuffer buffer, int offset, int slot, int capacity) {
+        long sequence = buffer.getLong(offset + SpanRecorder.SEQUENCE) - 1;
+        if (sequence < 0 || sequence % capacity != slot) {
+            return null;
+        }
+        int methodLength = buffer.get(offset + SpanRecorder.METHOD_LENGTH);
+        int traceIdLength = buffer.get(offset + SpanRecorder.TRACE_ID_LENGTH);
+        int spanIdLength = buffer.get(offset + SpanRecorder.SPAN_ID_LENGTH);
+        int pathLength = buffer.getShort(offset + SpanRecorder.PATH_LENGTH);
+        if (!inRange(methodLength, SpanRecorder.METHOD_MAX) || !inRange(traceIdLength, SpanRecorder.TRACE_ID_MAX)
+                || !inRange(spanIdLength, SpanRecorder.SPAN_ID_MAX) || !inRange(pathLength, SpanRecorder.PATH_MAX)) {
+            return null;
+        }
+        RecordedSpan span = new RecordedSpan(sequence,
+                buffer.getLong(offset + SpanRecorder.START_MICROS),
+                buffer.getLong(offset + SpanRecorder.DURATION_NANOS),
+                ascii(buffer, offset + SpanRecorder.TRACE_ID, traceIdLength),
+                ascii(buffer, offset + SpanRecorder.SPAN_ID, spanIdLength),
+                ascii(buffer, offset + SpanRecorder.METHOD, methodLength),
+                ascii(buffer, offset + SpanRecorder.PATH, pathLength),
+                buffer.getShort(offset + SpanRecorder.STATUS) & 0xffff,
+                (buffer.get(offset + SpanRecorder.FLAGS) & SpanRecorder.FLAG_ERROR) != 0);
+        // the record was overwritten while it was read
+        return buffer.getLong(offset + SpanRecorder.SEQUENCE) - 1 == sequence ? span : null;
+    }
+
+    private static boolean inRange(int length, int maxLength) {
+        return length >= 0 && length <= maxLength;
+    }
+
+    private static String ascii(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,211 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.servlet.ServletContext;
+
+import io.opentracing.SpanContext;
+
+/**
+ * Keeps the last server spans of {@link TracingFilter} in memory, and optionally in a memory-mapped file, so that
+ * request timings of the node are available when the tracing backend is unreachable. Recording never blocks the
+ * request thread: a slot of a ring buffer is claimed with a single atomic increment and the oldest span is
+ * overwritten. Memory is bounded by the capacity.
+ *
+ * The file has fixed-size records and is read with {@link SpanRecordReader}, also after the process exited.
+ * Strings longer than their field are cut, trace id to 32, span id to 16, method to 16 and path to 96 characters,
+ * characters outside printable ASCII are stored as {@code ?}. A record of the file is written by one thread at a
+ * time: when the ring wraps while the previous span of the slot is still being written, the newer span is kept in
+ * memory only, so the file never mixes fields of two requests.
+ *
+ * Register an instance via {@link ServletContext#setAttribute(String, Object)} with key
+ * {@link TracingFilter#SPAN_RECORDER}.
+ */
+public final class SpanRecorder implements Closeable {
+
+    static final int MAGIC = 0x4f545352;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 192;
+
+    // record layout, sequence + 1 is written last, 0 marks an empty or incomplete record
+    static final int SEQUENCE = 0;
+    static final int START_MICROS = 8;
+    static final int DURATION_NANOS = 16;
+    static final int STATUS = 24;
+    static final int FLAGS = 26;
+    static final int METHOD_LENGTH = 27;
+    static final int TRACE_ID_LENGTH = 28;
+    static final int SPAN_ID_LENGTH = 29;
+    static final int PATH_LENGTH = 30;
+    static final int TRACE_ID = 32;
+    static final int SPAN_ID = 64;
+    static final int METHOD = 80;
+    static final int PATH = 96;
+    static final int TRACE_ID_MAX = 32;
+    static final int SPAN_ID_MAX = 16;
+    static final int METHOD_MAX = 16;
+    static final int PATH_MAX = 96;
+    static final int FLAG_ERROR = 1;
+
+    private final int capacity;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicReferenceArray<RecordedSpan> spans;
+    private final FileChannel channel;
+    private final MappedByteBuffer file;
+    // 1 while a thread writes the record of the slot
+    private final AtomicIntegerArray writing;
+
+    /**
+     * @param capacity number of spans to keep
+     */
+    public SpanRecorder(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.spans = new AtomicReferenceArray<>(capacity);
+        this.channel = null;
+        this.file = null;
+        this.writing = null;
+    }
+
+    /**
+     * @param capacity number of spans to keep
+     * @param file file to map, an existing file is overwritten
+     * @throws IOException if the file cannot be mapped
+     */
+    public SpanRecorder(int capacity, Path file) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.spans = new AtomicReferenceArray<>(capacity);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            this.file = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.file.putInt(0, MAGIC);
+        this.file.putInt(4, VERSION);
+        this.file.putInt(8, capacity);
+        this.file.putInt(12, RECORD_SIZE);
+        this.writing = new AtomicIntegerArray(capacity);
+    }
+
+    /**
+     * @return number of spans recorded since creation, including overwritten ones
+     */
+    public long getRecorded() {
+        return sequence.get();
+    }
+
+    /**
+     * @return spans kept in memory, oldest first
+     */
+    public List<RecordedSpan> snapshot() {
+        List<RecordedSpan> snapshot = new ArrayList<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            RecordedSpan span = spans.get(i);
+            if (span != null) {
+                snapshot.add(span);
+            }
+        }
+        sortBySequence(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Flushes the mapped file to the storage device.
+     */
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.force();
+            channel.close();
+        }
+    }
+
+    void record(SpanContext spanContext, String method, String path, int status, boolean error,
+            long startEpochMicros, long durationNanos) {
+        long seq = sequence.getAndIncrement();
+        RecordedSpan span = new RecordedSpan(seq, startEpochMicros, durationNanos, spanContext.toTraceId(),
+                spanContext.toSpanId(), method, path, status, error);
+        int slot = (int) (seq % capacity);
+        spans.lazySet(slot, span);
+        if (file != null && writing.compareAndSet(slot, 0, 1)) {
+            try {
+                write(file, HEADER_SIZE + slot * RECORD_SIZE, span);
+            } finally {
+                writing.set(slot, 0);
+            }
+        }
+    }
+
+    private static void write(ByteBuffer buffer, int offset, RecordedSpan span) {
+        // absolute puts only, the buffer position is shared by all threads
+        buffer.putLong(offset + SEQUENCE, 0);
+        buffer.putLong(offset + START_MICROS, span.getStartEpochMicros());
+        buffer.putLong(offset + DURATION_NANOS, span.getDurationNanos());
+        buffer.putShort(offset + STATUS, (short) span.getStatus());
+        buffer.put(offset + FLAGS, (byte) (span.isError() ? FLAG_ERROR : 0));
+        buffer.put(offset + METHOD_LENGTH, (byte) putAscii(buffer, offset + METHOD, span.getMethod(), METHOD_MAX));
+        buffer.put(offset + TRACE_ID_LENGTH,
+                (byte) putAscii(buffer, offset + TRACE_ID, span.getTraceId(), TRACE_ID_MAX));
+        buffer.put(offset + SPAN_ID_LENGTH, (byte) putAscii(buffer, offset + SPAN_ID, span.getSpanId(), SPAN_ID_MAX));
+        buffer.putShort(offset + PATH_LENGTH, (short) putAscii(buffer, offset + PATH, span.getPath(), PATH_MAX));
+        buffer.putLong(offset + SEQUENCE, span.getSequence() + 1);
+    }
+
+    private static int putAscii(ByteBuffer buffer, int offset, String value, int maxLength) {
+        if (value == null) {
+            return 0;
+        }
+        int length = Math.min(value.length(), maxLength);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            buffer.put(offset + i, c >= 0x20 && c < 0x7f ? (byte) c : (byte) '?');
+        }
+        return length;
+    }
+
+    static void sortBySequence(List<RecordedSpan> spans) {
+        Collections.sort(spans, new Comparator<RecordedSpan>() {
+            @Override
+            public int compare(RecordedSpan a, RecordedSpan b) {
+                return a.getSequence() < b.getSequence() ? -1 : (a.getSequence() == b.getSequence() ? 0 : 1);
+            }
+        });
+    }
+}
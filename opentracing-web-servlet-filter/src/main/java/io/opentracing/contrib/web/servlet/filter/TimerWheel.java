@@ -0,0 +1,172 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timer wheel running tasks on a single daemon thread. Scheduling only appends to a lock-free queue, the
+ * thread moves tasks to the bucket of their tick and runs expired ones, so precision is one tick. The thread
+ * exits when no task is pending and is started again by the next {@link #schedule(Runnable, long)}, an idle
+ * wheel does not keep a thread of an undeployed application alive.
+ */
+final class TimerWheel {
+    private static final Logger log = Logger.getLogger(TimerWheel.class.getName());
+
+    private static final TimerWheel SHARED = new TimerWheel(TimeUnit.MILLISECONDS.toNanos(100), 512,
+            "tracing-filter-timer");
+
+    private final long tickNanos;
+    private final List<List<Timeout>> buckets;
+    private final String threadName;
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    // scheduled tasks not yet run or removed after cancellation
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * @param tickNanos duration of a tick
+     * @param wheelSize number of buckets, tasks further than one rotation wait for more rotations
+     * @param threadName name of the thread running the tasks
+     */
+    TimerWheel(long tickNanos, int wheelSize, String threadName) {
+        this.tickNanos = tickNanos;
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayList<Timeout>());
+        }
+        this.threadName = threadName;
+    }
+
+    /**
+     * @return wheel with 100 milliseconds tick shared by all filters
+     */
+    static TimerWheel shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param task task to run on the timer thread, it must not block
+     * @param delayNanos delay
+     * @return handle to cancel the task
+     */
+    Timeout schedule(Runnable task, long delayNanos) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + delayNanos);
+        size.incrementAndGet();
+        pending.add(timeout);
+        if (!running.get() && running.compareAndSet(false, true)) {
+            Thread thread = new Thread(new Worker(), threadName);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return timeout;
+    }
+
+    boolean isRunning() {
+        return running.get();
+    }
+
+    static final class Timeout {
+        private volatile Runnable task;
+        private final long deadlineNanos;
+        private long rounds;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the task and releases it, the entry itself is dropped at its tick.
+         */
+        void cancel() {
+            task = null;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final long startNanos = System.nanoTime();
+        private long tick;
+
+        @Override
+        public void run() {
+            while (true) {
+                long tickStartNanos = startNanos + tick * tickNanos;
+                long waitNanos;
+                while ((waitNanos = tickStartNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, waitNanos);
+                }
+                transferPending();
+                expire(buckets.get((int) (tick % buckets.size())));
+                tick++;
+
+                if (size.get() == 0) {
+                    running.set(false);
+                    // a task scheduled meanwhile either restarted the wheel or is picked up by this thread
+                    if (size.get() == 0 || !running.compareAndSet(false, true)) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void transferPending() {
+            Timeout timeout;
+            while ((timeout = pending.poll()) != null) {
+                if (timeout.task == null) {
+                    size.decrementAndGet();
+                    continue;
+                }
+                long ticks = (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos;
+                if (ticks < tick) {
+                    ticks = tick;
+                }
+                timeout.rounds = (ticks - tick) / buckets.size();
+                buckets.get((int) (ticks % buckets.size())).add(timeout);
+            }
+        }
+
+        private void expire(List<Timeout> bucket) {
+            Iterator<Timeout> iterator = bucket.iterator();
+            while (iterator.hasNext()) {
+                Timeout timeout = iterator.next();
+                Runnable task = timeout.task;
+                if (task != null && timeout.rounds > 0) {
+                    timeout.rounds--;
+                    continue;
+                }
+                iterator.remove();
+                size.decrementAndGet();
+                if (task != null) {
+                    timeout.task = null;
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        log.log(Level.WARNING, "Timer task failed", e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import io.opentracing.tag.Tags;
+
+/**
+ * Sampler deciding by a hash of the trace id, every node keeps or drops the same traces without coordination.
+ * A trace kept at some rate is kept at every higher rate, so routes with a lower rate drop only a subset of the
+ * traces kept by routes with a higher rate. Route is the servlet path of the request.
+ *
+ * Dropped server spans are marked with {@link Tags#SAMPLING_PRIORITY} 0. Kept spans are not marked because
+ * a positive priority forces debug sampling in some tracers, the tracer itself should be configured to sample
+ * all traces.
+ *
+ * Register an instance via {@link ServletContext#setAttribute(String, Object)} with key
+ * {@link TracingFilter#TRACE_ID_SAMPLER}:
+ * <pre>
+ * {@code
+ *  servletContext.setAttribute(TracingFilter.TRACE_ID_SAMPLER, TraceIdSampler.builder()
+ *      .defaultRate(0.1)
+ *      .routeRate("/checkout", 1.0)
+ *      .routeRate("/health", 0)
+ *      .build());
+ * }
+ * </pre>
+ */
+public final class TraceIdSampler {
+
+    /**
+     * Property with the default rate, see {@link #fromProperties(Properties)}
+     */
+    public static final String DEFAULT_RATE_PROPERTY = "default";
+    /**
+     * Prefix of properties with the rate of a route, see {@link #fromProperties(Properties)}
+     */
+    public static final String ROUTE_RATE_PREFIX = "route.";
+
+    // decisions compare top 53 bits of the hash, the same precision as the rate
+    private static final double HASH_RANGE = 1L << 53;
+
+    private final long defaultThreshold;
+    private final Map<String, Long> routeThresholds;
+
+    private TraceIdSampler(Builder builder) {
+        this.defaultThreshold = threshold(builder.defaultRate);
+        this.routeThresholds = new HashMap<>();
+        for (Map.Entry<String, Double> entry: builder.routeRates.entrySet()) {
+            routeThresholds.put(entry.getKey(), threshold(entry.getValue()));
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates a sampler from properties, e.g. loaded from a local file:
+     * <pre>
+     * default=0.1
+     * route./checkout=1.0
+     * </pre>
+     *
+     * @param properties rates
+     * @return sampler
+     * @throws IllegalArgumentException if a rate is not a number between 0 and 1
+     */
+    public static TraceIdSampler fromProperties(Properties properties) {
+        Builder builder = builder();
+        for (String name: properties.stringPropertyNames()) {
+            if (name.equals(DEFAULT_RATE_PROPERTY)) {
+                builder.defaultRate(parseRate(name, properties.getProperty(name)));
+            } else if (name.startsWith(ROUTE_RATE_PREFIX)) {
+                builder.routeRate(name.substring(ROUTE_RATE_PREFIX.length()),
+                        parseRate(name, properties.getProperty(name)));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param httpServletRequest request
+     * @param traceId trace id of the server span
+     * @return whether the trace should be kept
+     */
+    public boolean isSampled(HttpServletRequest httpServletRequest, String traceId) {
+        long threshold = defaultThreshold;
+        if (!routeThresholds.isEmpty()) {
+            Long routeThreshold = routeThresholds.get(httpServletRequest.getServletPath());
+            if (routeThreshold != null) {
+                threshold = routeThreshold;
+            }
+        }
+        return isSampled(traceId, threshold);
+    }
+
+    static boolean isSampled(String traceId, long threshold) {
+        return (hash(traceId) >>> 11) < threshold;
+    }
+
+    static long threshold(double rate) {
+        // rate 1 maps to 2^53 which is above every hash
+        return (long) (rate * HASH_RANGE);
+    }
+
+    /**
+     * FNV-1a of the characters followed by a finalizer of MurmurHash3, stable across JVMs and processes.
+     * Trace ids of some tracers are not uniformly random in all bits, the finalizer spreads them.
+     */
+    static long hash(String traceId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < traceId.length(); i++) {
+            hash ^= traceId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static double parseRate(String name, String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid rate of " + name + ": " + value, e);
+        }
+    }
+
+    private static void checkRate(double rate) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("Rate must be between 0 and 1: " + rate);
+        }
+    }
+
+    public static final class Builder {
+        private double defaultRate = 1;
+        private final Map<String, Double> routeRates = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param rate fraction of traces to keep for routes without a specific rate, defaults to 1
+         * @return builder
+         */
+        public Builder defaultRate(double rate) {
+            checkRate(rate);
+            this.defaultRate = rate;
+            return this;
+        }
+
+        /**
+         * @param route servlet path
+         * @param rate fraction of traces to keep for the route
+         * @return builder
+         */
+        public Builder routeRate(String route, double rate) {
+            checkRate(rate);
+            routeRates.put(route, rate);
+            return this;
+        }
+
+        public TraceIdSampler build() {
+            return new TraceIdSampler(this);
+        }
+    }
+}
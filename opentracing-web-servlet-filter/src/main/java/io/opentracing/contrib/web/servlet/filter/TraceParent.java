@@ -0,0 +1,181 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import io.opentracing.propagation.Format;
+
+/**
+ * Carrier with parsed W3C trace context headers,
+ * see <a href="https://www.w3.org/TR/trace-context/">Trace Context</a>. Tracers which register an extractor for
+ * {@link #FORMAT} get trace and span ids as primitives instead of iterating over string headers.
+ *
+ * {@code traceparent} is decoded without regular expressions or intermediate strings, {@code tracestate} is
+ * passed as is.
+ */
+public final class TraceParent {
+
+    public static final String TRACE_PARENT_HEADER = "traceparent";
+    public static final String TRACE_STATE_HEADER = "tracestate";
+
+    /**
+     * Format of {@link TraceParent} carrier, to be used with {@link io.opentracing.Tracer#extract(Format, Object)}.
+     */
+    public static final Format<TraceParent> FORMAT = new Format<TraceParent>() {
+        @Override
+        public String toString() {
+            return TraceParent.class.getSimpleName();
+        }
+    };
+
+    private static final int VERSION_LENGTH = 2;
+    private static final int TRACE_ID_LENGTH = 32;
+    private static final int SPAN_ID_LENGTH = 16;
+    private static final int FLAGS_LENGTH = 2;
+    private static final int TRACE_ID_OFFSET = VERSION_LENGTH + 1;
+    private static final int SPAN_ID_OFFSET = TRACE_ID_OFFSET + TRACE_ID_LENGTH + 1;
+    private static final int FLAGS_OFFSET = SPAN_ID_OFFSET + SPAN_ID_LENGTH + 1;
+    private static final int LENGTH = FLAGS_OFFSET + FLAGS_LENGTH;
+
+    private static final int SAMPLED_FLAG = 0x01;
+
+    private final int version;
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long spanId;
+    private final int flags;
+    private final String traceState;
+
+    public TraceParent(int version, long traceIdHigh, long traceIdLow, long spanId, int flags, String traceState) {
+        this.version = version;
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = spanId;
+        this.flags = flags;
+        this.traceState = traceState;
+    }
+
+    /**
+     * @param traceParent value of {@code traceparent} header
+     * @param traceState value of {@code tracestate} header or null
+     * @return parsed carrier or null if {@code traceparent} is missing or invalid
+     */
+    public static TraceParent parse(CharSequence traceParent, String traceState) {
+        if (traceParent == null || traceParent.length() < LENGTH) {
+            return null;
+        }
+        int version = (int) decodeHex(traceParent, 0, VERSION_LENGTH);
+        // version ff is forbidden, version 00 has exactly four fields, future versions may append fields
+        if (version < 0 || version == 0xff
+                || (version == 0 && traceParent.length() != LENGTH)
+                || (version != 0 && traceParent.length() > LENGTH && traceParent.charAt(LENGTH) != '-')
+                || traceParent.charAt(TRACE_ID_OFFSET - 1) != '-'
+                || traceParent.charAt(SPAN_ID_OFFSET - 1) != '-'
+                || traceParent.charAt(FLAGS_OFFSET - 1) != '-') {
+            return null;
+        }
+        long traceIdHigh = decodeHex(traceParent, TRACE_ID_OFFSET, 16);
+        long traceIdLow = decodeHex(traceParent, TRACE_ID_OFFSET + 16, 16);
+        long spanId = decodeHex(traceParent, SPAN_ID_OFFSET, SPAN_ID_LENGTH);
+        int flags = (int) decodeHex(traceParent, FLAGS_OFFSET, FLAGS_LENGTH);
+        // all zero ids are invalid, -1 marks invalid hex digits unless all digits are f
+        if ((traceIdHigh == 0 && traceIdLow == 0) || spanId == 0 || flags < 0
+                || (traceIdHigh == -1 && !isHex(traceParent, TRACE_ID_OFFSET, 16))
+                || (traceIdLow == -1 && !isHex(traceParent, TRACE_ID_OFFSET + 16, 16))
+                || (spanId == -1 && !isHex(traceParent, SPAN_ID_OFFSET, SPAN_ID_LENGTH))) {
+            return null;
+        }
+        return new TraceParent(version, traceIdHigh, traceIdLow, spanId, flags, traceState);
+    }
+
+    /**
+     * Decodes lowercase hex digits, at most 16. Returns -1 for invalid digits, for 16 digits -1 is also a valid
+     * value.
+     */
+    private static long decodeHex(CharSequence value, int offset, int length) {
+        long result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int digit = hexDigit(value.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
+    private static boolean isHex(CharSequence value, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (hexDigit(value.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return upper 64 bits of the trace id
+     */
+    public long getTraceIdHigh() {
+        return traceIdHigh;
+    }
+
+    /**
+     * @return lower 64 bits of the trace id
+     */
+    public long getTraceIdLow() {
+        return traceIdLow;
+    }
+
+    /**
+     * @return parent span id
+     */
+    public long getSpanId() {
+        return spanId;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public boolean isSampled() {
+        return (flags & SAMPLED_FLAG) != 0;
+    }
+
+    /**
+     * @return value of {@code tracestate} header or null
+     */
+    public String getTraceState() {
+        return traceState;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%02x-%016x%016x-%016x-%02x", version, traceIdHigh, traceIdLow, spanId, flags);
+    }
+}
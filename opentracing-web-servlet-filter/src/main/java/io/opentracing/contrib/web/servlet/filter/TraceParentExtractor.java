@@ -0,0 +1,56 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServletRequest;
+
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.TextMap;
+
+/**
+ * Extracts span context from W3C {@code traceparent} and {@code tracestate} headers parsed into
+ * {@link TraceParent} carrier. Falls back to {@link SpanContextExtractor#HTTP_HEADERS} if the request has no
+ * valid {@code traceparent} or the tracer returns no context. If the tracer rejects {@link TraceParent#FORMAT}
+ * by throwing an exception, the carrier is not used anymore.
+ */
+public class TraceParentExtractor implements SpanContextExtractor {
+    private static final Logger log = Logger.getLogger(TraceParentExtractor.class.getName());
+
+    private volatile boolean formatSupported = true;
+
+    @Override
+    public SpanContext extract(Tracer tracer, HttpServletRequest httpServletRequest, TextMap headers) {
+        if (formatSupported) {
+            TraceParent traceParent = TraceParent.parse(httpServletRequest.getHeader(TraceParent.TRACE_PARENT_HEADER),
+                    httpServletRequest.getHeader(TraceParent.TRACE_STATE_HEADER));
+            if (traceParent != null) {
+                try {
+                    SpanContext spanContext = tracer.extract(TraceParent.FORMAT, traceParent);
+                    if (spanContext != null) {
+                        return spanContext;
+                    }
+                } catch (IllegalArgumentException | UnsupportedOperationException ex) {
+                    log.warning("Tracer does not support " + TraceParent.FORMAT + " format, falling back to "
+                            + "HTTP headers: " + ex.getMessage());
+                    formatSupported = false;
+                }
+            }
+        }
+        return HTTP_HEADERS.extract(tracer, httpServletRequest, headers);
+    }
+}
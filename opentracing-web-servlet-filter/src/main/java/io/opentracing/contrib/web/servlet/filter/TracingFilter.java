@@ -19,15 +19,22 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 import javax.servlet.AsyncEvent;
 import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
+import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
@@ -38,7 +45,9 @@ import javax.servlet.http.HttpServletResponse;
 import io.opentracing.Scope;
 import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
-import io.opentracing.propagation.Format;
+import io.opentracing.tag.BooleanTag;
+import io.opentracing.tag.IntTag;
+import io.opentracing.tag.StringTag;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
 
@@ -80,17 +89,140 @@ public class TracingFilter implements Filter {
      * Use as a key of {@link ServletContext#setAttribute(String, Object)} to skip pattern
      */
     public static final String SKIP_PATTERN = TracingFilter.class.getName() + ".skipPattern";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} to set {@link SkipRules}
+     */
+    public static final String SKIP_RULES = TracingFilter.class.getName() + ".skipRules";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} with {@link Boolean#TRUE} to add
+     * {@code Server-Timing} response header with the duration measured by the filter
+     */
+    public static final String SERVER_TIMING = TracingFilter.class.getName() + ".serverTiming";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} with {@link Boolean#TRUE} to add
+     * {@code traceresponse} response header with trace and span id of the server span
+     */
+    public static final String TRACE_RESPONSE = TracingFilter.class.getName() + ".traceResponse";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} to set {@link AdmissionControl}
+     */
+    public static final String ADMISSION_CONTROL = TracingFilter.class.getName() + ".admissionControl";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} to set name of a request header with
+     * remaining time budget of the upstream e.g. "grpc-timeout", see {@link RequestDeadline}
+     */
+    public static final String DEADLINE_HEADER = TracingFilter.class.getName() + ".deadlineHeader";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} to set name of a baggage item with
+     * absolute deadline of the upstream in epoch milliseconds, see {@link RequestDeadline}
+     */
+    public static final String DEADLINE_BAGGAGE_ITEM = TracingFilter.class.getName() + ".deadlineBaggageItem";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} to set {@link InFlightRequests}
+     */
+    public static final String IN_FLIGHT_REQUESTS = TracingFilter.class.getName() + ".inFlightRequests";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} to set {@link DispatchTracing}
+     */
+    public static final String DISPATCH_TRACING = TracingFilter.class.getName() + ".dispatchTracing";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} with {@link Boolean#TRUE} to buffer
+     * tags and logs of span decorators and apply them to the server span in one batch before it is finished.
+     * Buffered tags and logs are dropped if a decorator sets {@link Tags#SAMPLING_PRIORITY} to 0.
+     */
+    public static final String BUFFER_SPAN_EVENTS = TracingFilter.class.getName() + ".bufferSpanEvents";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} with {@link Boolean#TRUE} to reuse
+     * a single mutable entry while the tracer iterates request headers. Enable only if the tracer does not
+     * retain the entries, see {@link HttpServletRequestExtractAdapter}.
+     */
+    public static final String REUSE_CARRIER_ENTRIES = TracingFilter.class.getName() + ".reuseCarrierEntries";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} to set {@link SpanContextExtractor}
+     */
+    public static final String SPAN_CONTEXT_EXTRACTOR = TracingFilter.class.getName() + ".spanContextExtractor";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} to set {@link TracingGovernor}
+     */
+    public static final String TRACING_GOVERNOR = TracingFilter.class.getName() + ".tracingGovernor";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} to set {@link TraceIdSampler}
+     */
+    public static final String TRACE_ID_SAMPLER = TracingFilter.class.getName() + ".traceIdSampler";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} to set {@link SpanRecorder}
+     */
+    public static final String SPAN_RECORDER = TracingFilter.class.getName() + ".spanRecorder";
+    /**
+     * Use as a key of {@link ServletContext#setAttribute(String, Object)} to set {@link AsyncTimeoutPolicy}
+     */
+    public static final String ASYNC_TIMEOUT_POLICY = TracingFilter.class.getName() + ".asyncTimeoutPolicy";
 
     /**
      * Used as a key of {@link HttpServletRequest#setAttribute(String, Object)} to inject server span context
      */
     public static final String SERVER_SPAN_CONTEXT = TracingFilter.class.getName() + ".activeSpanContext";
+    /**
+     * Used as a key of {@link HttpServletRequest#setAttribute(String, Object)} to inject {@link RequestDeadline}
+     */
+    public static final String REQUEST_DEADLINE = TracingFilter.class.getName() + ".requestDeadline";
+    /**
+     * Used as a key of {@link HttpServletRequest#setAttribute(String, Object)} with {@link Boolean#TRUE} on requests
+     * which started async processing, so that span decorators can tell completion of an async request from
+     * a synchronous response
+     */
+    public static final String ASYNC_STARTED = TracingFilter.class.getName() + ".asyncStarted";
+    /**
+     * Used as a key of {@link HttpServletRequest#setAttribute(String, Object)} with {@link Boolean#TRUE} on requests
+     * whose span was dropped by {@link TraceIdSampler}, so that span decorators can skip costly measurements
+     */
+    public static final String NOT_SAMPLED = TracingFilter.class.getName() + ".notSampled";
+
+    /**
+     * Tag with the reason of a rejection by {@link AdmissionControl}
+     */
+    public static final StringTag ADMISSION_REJECTED = new StringTag("admission.rejected");
+    /**
+     * Tag added when the request took longer than {@link RequestDeadline} propagated by the upstream
+     */
+    public static final BooleanTag DEADLINE_EXCEEDED = new BooleanTag("deadline.exceeded");
+    /**
+     * Number of in-flight requests, including this one, observed when the request started
+     */
+    public static final IntTag IN_FLIGHT = new IntTag("http.in_flight");
+    /**
+     * Number of in-flight requests of the same route, including this one, observed when the request started
+     */
+    public static final IntTag IN_FLIGHT_ROUTE = new IntTag("http.in_flight.route");
+    /**
+     * Target path of a forward, include or error dispatch
+     */
+    public static final StringTag DISPATCH_PATH = new StringTag("dispatch.path");
 
     private FilterConfig filterConfig;
 
     protected Tracer tracer;
     private List<ServletFilterSpanDecorator> spanDecorators;
+    private List<ServletFilterSpanDecorator> standardDecorators;
     private Pattern skipPattern;
+    // bounded pool instead of a thread local, container threads must not keep classes of the webapp after undeploy
+    private final ObjectPool<SkipPatternMatcher> skipPatternMatchers = new ObjectPool<>(64);
+    private SkipRules skipRules;
+    private boolean serverTiming;
+    private boolean traceResponse;
+    private AdmissionControl admissionControl;
+    private String deadlineHeader;
+    private String deadlineBaggageItem;
+    private InFlightRequests inFlightRequests;
+    private DispatchTracing dispatchTracing = DispatchTracing.NONE;
+    private boolean bufferSpanEvents;
+    private boolean reuseCarrierEntries;
+    private SpanContextExtractor spanContextExtractor = SpanContextExtractor.HTTP_HEADERS;
+    private TracingGovernor governor;
+    private TraceIdSampler traceIdSampler;
+    private SpanRecorder spanRecorder;
+    private AsyncTimeoutPolicy asyncTimeoutPolicy = AsyncTimeoutPolicy.markAndWait();
+    private final ObjectPool<RequestState> requestStates = new ObjectPool<>(256);
 
     /**
      * Tracer instance has to be registered with {@link GlobalTracer#register(Tracer)}.
@@ -151,6 +283,69 @@ public class TracingFilter implements Filter {
         if (contextAttribute instanceof Pattern) {
             skipPattern = (Pattern) contextAttribute;
         }
+
+        contextAttribute = servletContext.getAttribute(SKIP_RULES);
+        if (contextAttribute instanceof SkipRules) {
+            skipRules = (SkipRules) contextAttribute;
+        }
+
+        serverTiming = Boolean.TRUE.equals(servletContext.getAttribute(SERVER_TIMING));
+        traceResponse = Boolean.TRUE.equals(servletContext.getAttribute(TRACE_RESPONSE));
+        bufferSpanEvents = Boolean.TRUE.equals(servletContext.getAttribute(BUFFER_SPAN_EVENTS));
+        reuseCarrierEntries = Boolean.TRUE.equals(servletContext.getAttribute(REUSE_CARRIER_ENTRIES));
+
+        contextAttribute = servletContext.getAttribute(SPAN_CONTEXT_EXTRACTOR);
+        if (contextAttribute instanceof SpanContextExtractor) {
+            spanContextExtractor = (SpanContextExtractor) contextAttribute;
+        }
+
+        contextAttribute = servletContext.getAttribute(ADMISSION_CONTROL);
+        if (contextAttribute instanceof AdmissionControl) {
+            admissionControl = (AdmissionControl) contextAttribute;
+        }
+
+        contextAttribute = servletContext.getAttribute(DEADLINE_HEADER);
+        if (contextAttribute instanceof String) {
+            deadlineHeader = (String) contextAttribute;
+        }
+        contextAttribute = servletContext.getAttribute(DEADLINE_BAGGAGE_ITEM);
+        if (contextAttribute instanceof String) {
+            deadlineBaggageItem = (String) contextAttribute;
+        }
+
+        contextAttribute = servletContext.getAttribute(IN_FLIGHT_REQUESTS);
+        if (contextAttribute instanceof InFlightRequests) {
+            inFlightRequests = (InFlightRequests) contextAttribute;
+        }
+
+        contextAttribute = servletContext.getAttribute(DISPATCH_TRACING);
+        if (contextAttribute instanceof DispatchTracing) {
+            dispatchTracing = (DispatchTracing) contextAttribute;
+        }
+
+        contextAttribute = servletContext.getAttribute(TRACING_GOVERNOR);
+        if (contextAttribute instanceof TracingGovernor) {
+            governor = (TracingGovernor) contextAttribute;
+        }
+
+        contextAttribute = servletContext.getAttribute(TRACE_ID_SAMPLER);
+        if (contextAttribute instanceof TraceIdSampler) {
+            traceIdSampler = (TraceIdSampler) contextAttribute;
+        }
+
+        contextAttribute = servletContext.getAttribute(SPAN_RECORDER);
+        if (contextAttribute instanceof SpanRecorder) {
+            spanRecorder = (SpanRecorder) contextAttribute;
+        }
+
+        contextAttribute = servletContext.getAttribute(ASYNC_TIMEOUT_POLICY);
+        if (contextAttribute instanceof AsyncTimeoutPolicy) {
+            asyncTimeoutPolicy = (AsyncTimeoutPolicy) contextAttribute;
+        }
+
+        standardDecorators = spanDecorators.contains(ServletFilterSpanDecorator.STANDARD_TAGS)
+                ? Collections.singletonList(ServletFilterSpanDecorator.STANDARD_TAGS)
+                : Collections.<ServletFilterSpanDecorator>emptyList();
     }
 
     @Override
@@ -160,97 +355,328 @@ public class TracingFilter implements Filter {
         HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
         HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
 
+        /**
+         * If request is already traced then do not start new span, e.g. the filter is mapped twice or
+         * the request is dispatched asynchronously. Forward, include and error dispatches are optionally traced.
+         */
+        DispatcherType dispatcherType = httpRequest.getDispatcherType();
+        if (dispatcherType == DispatcherType.REQUEST || dispatcherType == DispatcherType.ASYNC) {
+            if (httpRequest.getAttribute(SERVER_SPAN_CONTEXT) != null) {
+                chain.doFilter(servletRequest, servletResponse);
+                return;
+            }
+        } else if (httpRequest.getAttribute(SERVER_SPAN_CONTEXT) != null) {
+            if (dispatchTracing == DispatchTracing.NONE || (skipRules != null && skipRules.skip(httpRequest))) {
+                chain.doFilter(servletRequest, servletResponse);
+            } else {
+                traceDispatch(httpRequest, httpResponse, chain, dispatcherType);
+            }
+            return;
+        }
+
         if (!isTraced(httpRequest, httpResponse)) {
             chain.doFilter(httpRequest, httpResponse);
             return;
         }
 
-        /**
-         * If request is traced then do not start new span.
-         */
-        if (servletRequest.getAttribute(SERVER_SPAN_CONTEXT) != null) {
-            chain.doFilter(servletRequest, servletResponse);
+        long governorNanos = 0;
+        TracingGovernor.Level level = TracingGovernor.Level.FULL;
+        if (governor != null) {
+            governorNanos = System.nanoTime();
+            level = governor.level(governorNanos);
+            if (level == TracingGovernor.Level.METRICS_ONLY) {
+                countUntraced(httpRequest, httpResponse, chain);
+                return;
+            }
+        }
+
+        long startNanos = serverTiming || traceResponse || deadlineHeader != null || deadlineBaggageItem != null
+                || spanRecorder != null ? System.nanoTime() : 0;
+        RequestState state = requestStates.acquire();
+        if (state == null) {
+            state = new RequestState();
         } else {
-            SpanContext extractedContext = tracer.extract(Format.Builtin.HTTP_HEADERS,
-                    new HttpServletRequestExtractAdapter(httpRequest));
+            state.finished.set(false);
+        }
+        state.carrier.reset(httpRequest);
+        SpanContext extractedContext = spanContextExtractor.extract(tracer, httpRequest, state.carrier);
+        state.carrier.reset(null);
+        if (level == TracingGovernor.Level.SAMPLED_ONLY && extractedContext == null) {
+            requestStates.release(state);
+            countUntraced(httpRequest, httpResponse, chain);
+            return;
+        }
+        List<ServletFilterSpanDecorator> spanDecorators = level == TracingGovernor.Level.FULL
+                ? this.spanDecorators : standardDecorators;
+        state.spanDecorators = spanDecorators;
+        RequestDeadline deadline = deadlineHeader != null || deadlineBaggageItem != null
+                ? extractDeadline(httpRequest, extractedContext, startNanos) : null;
+        if (deadline != null) {
+            httpRequest.setAttribute(REQUEST_DEADLINE, deadline);
+        }
+        Admission admission = admissionControl != null
+                ? admissionControl.admit(httpRequest, extractedContext) : null;
 
-            final Span span = tracer.buildSpan(httpRequest.getMethod())
+        Span serverSpan;
+        Span span;
+        boolean sampled;
+        ServerTimingResponseWrapper timingResponse = null;
+        boolean started = false;
+        // the slot is released by finishSpan once the chain is entered, until then failures must release it
+        try {
+            serverSpan = tracer.buildSpan(httpRequest.getMethod())
                     .asChildOf(extractedContext)
                     .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
                     .start();
+            // decorators and the filter itself tag the buffered facade, application code sees the server span
+            span = bufferSpanEvents ? BufferedSpan.of(serverSpan) : serverSpan;
+            sampled = traceIdSampler == null
+                    || traceIdSampler.isSampled(httpRequest, serverSpan.context().toTraceId());
+            if (!sampled) {
+                Tags.SAMPLING_PRIORITY.set(span, 0);
+                httpRequest.setAttribute(NOT_SAMPLED, Boolean.TRUE);
+            }
 
             httpRequest.setAttribute(SERVER_SPAN_CONTEXT, span.context());
 
-            for (ServletFilterSpanDecorator spanDecorator: spanDecorators) {
-                spanDecorator.onRequest(httpRequest, span);
+            for (int i = 0; i < spanDecorators.size(); i++) {
+                spanDecorators.get(i).onRequest(httpRequest, span);
             }
 
-            try (Scope scope = tracer.activateSpan(span)) {
-                chain.doFilter(servletRequest, servletResponse);
-                if (!httpRequest.isAsyncStarted()) {
-                    for (ServletFilterSpanDecorator spanDecorator : spanDecorators) {
-                        spanDecorator.onResponse(httpRequest, httpResponse, span);
-                    }
+            if (admission != null && !admission.isAdmitted()) {
+                reject(httpRequest, httpResponse, admission, span, spanDecorators);
+                state.spanDecorators = null;
+                requestStates.release(state);
+                return;
+            }
+            state.span = span;
+            state.admitted = admission != null;
+            state.deadline = deadline;
+            state.routeInFlight = inFlightRequests != null ? startInFlight(httpRequest, span) : null;
+            if (spanRecorder != null) {
+                state.startNanos = startNanos;
+                state.startEpochMicros = System.currentTimeMillis() * 1000;
+            }
+
+            if (serverTiming || traceResponse) {
+                timingResponse = new ServerTimingResponseWrapper(httpResponse, startNanos, span.context(),
+                        serverTiming, traceResponse, sampled);
+            }
+
+            if (governor != null) {
+                governor.requestStarted();
+                state.governorNanos = System.nanoTime() - governorNanos;
+            }
+            started = true;
+        } finally {
+            if (!started && admission != null && admission.isAdmitted()) {
+                admissionControl.release(httpRequest);
+            }
+        }
+
+        try (Scope scope = tracer.activateSpan(serverSpan)) {
+            chain.doFilter(servletRequest, timingResponse != null ? timingResponse : servletResponse);
+            if (governor != null && !httpRequest.isAsyncStarted()) {
+                state.chainEndNanos = System.nanoTime();
+            }
+            if (!httpRequest.isAsyncStarted()) {
+                if (timingResponse != null) {
+                    timingResponse.writeHeaders();
                 }
-            // catch all exceptions (e.g. RuntimeException, ServletException...)
-            } catch (Throwable ex) {
-                for (ServletFilterSpanDecorator spanDecorator : spanDecorators) {
-                    spanDecorator.onError(httpRequest, httpResponse, ex, span);
+                for (int i = 0; i < spanDecorators.size(); i++) {
+                    spanDecorators.get(i).onResponse(httpRequest, httpResponse, span);
                 }
-                throw ex;
+            }
+        // catch all exceptions (e.g. RuntimeException, ServletException...)
+        } catch (Throwable ex) {
+            state.error = true;
+            for (int i = 0; i < spanDecorators.size(); i++) {
+                spanDecorators.get(i).onError(httpRequest, httpResponse, ex, span);
+            }
+            throw ex;
+        } finally {
+            if (httpRequest.isAsyncStarted()) {
+                httpRequest.setAttribute(ASYNC_STARTED, Boolean.TRUE);
+                // what if async is already finished? This would not be called
+                httpRequest.getAsyncContext().addListener(state);
+            } else {
+                // If not async, then need to explicitly finish the span associated with the scope.
+                // This is necessary, as we don't know whether this request is being handled
+                // asynchronously until after the scope has already been started.
+                finishSpan(httpRequest, httpResponse, state);
+            }
+        }
+    }
+
+    private void traceDispatch(HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+            FilterChain chain, DispatcherType dispatcherType) throws IOException, ServletException {
+        String path = dispatcherType == DispatcherType.INCLUDE
+                ? (String) httpRequest.getAttribute(RequestDispatcher.INCLUDE_SERVLET_PATH)
+                : httpRequest.getServletPath();
+
+        if (dispatchTracing == DispatchTracing.LOG) {
+            Span activeSpan = tracer.activeSpan();
+            long startNanos = System.nanoTime();
+            try {
+                chain.doFilter(httpRequest, httpResponse);
             } finally {
-                if (httpRequest.isAsyncStarted()) {
-                    // what if async is already finished? This would not be called
-                    httpRequest.getAsyncContext()
-                            .addListener(new AsyncListener() {
-                        @Override
-                        public void onComplete(AsyncEvent event) throws IOException {
-                            HttpServletRequest httpRequest = (HttpServletRequest) event.getSuppliedRequest();
-                            HttpServletResponse httpResponse = (HttpServletResponse) event.getSuppliedResponse();
-                            for (ServletFilterSpanDecorator spanDecorator: spanDecorators) {
-                                    spanDecorator.onResponse(httpRequest,
-                                    httpResponse,
-                                    span);
-                            }
-                            span.finish();
-                        }
-
-                        @Override
-                        public void onTimeout(AsyncEvent event) throws IOException {
-                            HttpServletRequest httpRequest = (HttpServletRequest) event.getSuppliedRequest();
-                            HttpServletResponse httpResponse = (HttpServletResponse) event.getSuppliedResponse();
-                            for (ServletFilterSpanDecorator spanDecorator : spanDecorators) {
-                                  spanDecorator.onTimeout(httpRequest,
-                                      httpResponse,
-                                      event.getAsyncContext().getTimeout(),
-                                      span);
-                              }
-                        }
-
-                        @Override
-                        public void onError(AsyncEvent event) throws IOException {
-                            HttpServletRequest httpRequest = (HttpServletRequest) event.getSuppliedRequest();
-                            HttpServletResponse httpResponse = (HttpServletResponse) event.getSuppliedResponse();
-                            for (ServletFilterSpanDecorator spanDecorator: spanDecorators) {
-                                spanDecorator.onError(httpRequest,
-                                    httpResponse,
-                                    event.getThrowable(),
-                                    span);
-                            }
-                        }
-
-                        @Override
-                        public void onStartAsync(AsyncEvent event) throws IOException {
-                        }
-                    });
-                } else {
-                    // If not async, then need to explicitly finish the span associated with the scope.
-                    // This is necessary, as we don't know whether this request is being handled
-                    // asynchronously until after the scope has already been started.
-                    span.finish();
+                if (activeSpan != null) {
+                    Map<String, Object> dispatchLog = new HashMap<>(4);
+                    dispatchLog.put("event", dispatcherType.name().toLowerCase(Locale.ROOT));
+                    dispatchLog.put("path", path);
+                    dispatchLog.put("duration_us", TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+                    activeSpan.log(dispatchLog);
+                }
+            }
+            return;
+        }
+
+        Tracer.SpanBuilder spanBuilder = tracer.buildSpan(dispatcherType.name())
+                .withTag(Tags.COMPONENT.getKey(), "java-web-servlet")
+                .withTag(DISPATCH_PATH.getKey(), path);
+        if (tracer.activeSpan() == null) {
+            spanBuilder.asChildOf(serverSpanContext(httpRequest));
+        }
+        Span span = spanBuilder.start();
+        try (Scope scope = tracer.activateSpan(span)) {
+            chain.doFilter(httpRequest, httpResponse);
+        } catch (Throwable ex) {
+            Tags.ERROR.set(span, Boolean.TRUE);
+            throw ex;
+        } finally {
+            span.finish();
+        }
+    }
+
+    /**
+     * Passes request degraded by the governor without a span. Deadline and admission control still apply,
+     * async requests are counted and admitted until the filter returns. Span context is not extracted to keep
+     * degraded requests cheap, hence upstream baggage is not available: the deadline is read from
+     * {@link #DEADLINE_HEADER} only and {@link AdmissionControl} gets no extracted context.
+     */
+    private void countUntraced(HttpServletRequest httpRequest, HttpServletResponse httpResponse, FilterChain chain)
+            throws IOException, ServletException {
+        if (deadlineHeader != null) {
+            RequestDeadline deadline = extractDeadline(httpRequest, null, System.nanoTime());
+            if (deadline != null) {
+                httpRequest.setAttribute(REQUEST_DEADLINE, deadline);
+            }
+        }
+        Admission admission = admissionControl != null
+                ? admissionControl.admit(httpRequest, null) : null;
+        if (admission != null && !admission.isAdmitted()) {
+            if (admission.getRetryAfterSeconds() > 0) {
+                httpResponse.setIntHeader("Retry-After", admission.getRetryAfterSeconds());
+            }
+            httpResponse.sendError(admission.getStatusCode());
+            return;
+        }
+
+        governor.requestStarted();
+        try {
+            chain.doFilter(httpRequest, httpResponse);
+        } finally {
+            governor.requestFinished(0);
+            if (admission != null) {
+                admissionControl.release(httpRequest);
+            }
+        }
+    }
+
+    /**
+     * Finishes the span of the request and returns the state to the pool.
+     */
+    private void finishSpan(HttpServletRequest httpRequest, HttpServletResponse httpResponse, RequestState state) {
+        if (state.deadline != null && state.deadline.isExpired()) {
+            DEADLINE_EXCEEDED.set(state.span, Boolean.TRUE);
+        }
+        if (state.routeInFlight != null) {
+            state.routeInFlight.add(-1);
+            inFlightRequests.total().add(-1);
+        }
+        // a buffered span returns to its pool on finish, its context must be read before
+        SpanContext spanContext = spanRecorder != null ? state.span.context() : null;
+        state.span.finish();
+        if (spanRecorder != null) {
+            int status = httpResponse.getStatus();
+            // exception is thrown in filter chain, but status code is not set yet
+            spanRecorder.record(spanContext, httpRequest.getMethod(), httpRequest.getRequestURI(),
+                    state.error && status == HttpServletResponse.SC_OK ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR
+                            : status, state.error, state.startEpochMicros, System.nanoTime() - state.startNanos);
+        }
+        if (state.admitted) {
+            admissionControl.release(httpRequest);
+        }
+        if (governor != null) {
+            // time after the chain is only known for synchronous requests
+            governor.requestFinished(state.chainEndNanos != 0
+                    ? state.governorNanos + System.nanoTime() - state.chainEndNanos : state.governorNanos);
+            state.governorNanos = 0;
+            state.chainEndNanos = 0;
+        }
+        state.span = null;
+        state.error = false;
+        state.spanDecorators = null;
+        state.deadline = null;
+        state.routeInFlight = null;
+        state.timeout = null;
+        state.timedOutRequest = null;
+        state.timedOutResponse = null;
+        if (!state.timedOut) {
+            requestStates.release(state);
+        }
+    }
+
+    private StripedCounter startInFlight(HttpServletRequest httpRequest, Span span) {
+        StripedCounter total = inFlightRequests.total();
+        StripedCounter route = inFlightRequests.route(httpRequest.getServletPath());
+        total.add(1);
+        route.add(1);
+        IN_FLIGHT.set(span, (int) total.sum());
+        IN_FLIGHT_ROUTE.set(span, (int) route.sum());
+        return route;
+    }
+
+    private RequestDeadline extractDeadline(HttpServletRequest httpRequest, SpanContext extractedContext,
+            long startNanos) {
+        long budgetNanos = Long.MAX_VALUE;
+        if (deadlineHeader != null) {
+            String value = httpRequest.getHeader(deadlineHeader);
+            long timeoutNanos = value != null ? RequestDeadline.parseTimeoutNanos(value) : -1;
+            if (timeoutNanos >= 0) {
+                budgetNanos = timeoutNanos;
+            }
+        }
+        if (deadlineBaggageItem != null && extractedContext != null) {
+            for (Map.Entry<String, String> baggageItem: extractedContext.baggageItems()) {
+                if (deadlineBaggageItem.equals(baggageItem.getKey())) {
+                    try {
+                        long remainingMillis = Long.parseLong(baggageItem.getValue()) - System.currentTimeMillis();
+                        budgetNanos = Math.min(budgetNanos, TimeUnit.MILLISECONDS.toNanos(remainingMillis));
+                    } catch (NumberFormatException ex) {
+                        log.fine("Invalid deadline baggage item: " + baggageItem.getValue());
+                    }
+                    break;
                 }
             }
         }
+        return budgetNanos != Long.MAX_VALUE ? new RequestDeadline(startNanos, budgetNanos) : null;
+    }
+
+    private void reject(HttpServletRequest httpRequest, HttpServletResponse httpResponse, Admission admission,
+            Span span, List<ServletFilterSpanDecorator> spanDecorators) throws IOException {
+        try {
+            ADMISSION_REJECTED.set(span, admission.getReason());
+            if (admission.getRetryAfterSeconds() > 0) {
+                httpResponse.setIntHeader("Retry-After", admission.getRetryAfterSeconds());
+            }
+            httpResponse.sendError(admission.getStatusCode());
+            for (int i = 0; i < spanDecorators.size(); i++) {
+                spanDecorators.get(i).onResponse(httpRequest, httpResponse, span);
+            }
+        } finally {
+            span.finish();
+        }
     }
 
     @Override
@@ -266,12 +692,22 @@ public class TracingFilter implements Filter {
      * @return whether request should be traced or not
      */
     protected boolean isTraced(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) {
+        if (skipRules != null && skipRules.skip(httpServletRequest)) {
+            return false;
+        }
+
         // skip URLs matching skip pattern
         // e.g. pattern is defined as '/health|/status' then URL 'http://localhost:5000/context/health' won't be traced
         if (skipPattern != null) {
-        	int contextLength = httpServletRequest.getContextPath() == null ? 0 : httpServletRequest.getContextPath().length();
-            String url = httpServletRequest.getRequestURI().substring(contextLength);
-            return !skipPattern.matcher(url).matches();
+            String contextPath = httpServletRequest.getContextPath();
+            int contextLength = contextPath == null ? 0 : contextPath.length();
+            SkipPatternMatcher matcher = skipPatternMatchers.acquire();
+            if (matcher == null || matcher.pattern() != skipPattern) {
+                matcher = new SkipPatternMatcher(skipPattern);
+            }
+            boolean skip = matcher.matches(httpServletRequest.getRequestURI(), contextLength);
+            skipPatternMatchers.release(matcher);
+            return !skip;
         }
 
         return true;
@@ -286,4 +722,118 @@ public class TracingFilter implements Filter {
     public static SpanContext serverSpanContext(ServletRequest servletRequest) {
         return (SpanContext) servletRequest.getAttribute(SERVER_SPAN_CONTEXT);
     }
+
+    /**
+     * Get remaining time budget propagated by the upstream.
+     *
+     * @param servletRequest request
+     * @return deadline or null if the upstream did not propagate any
+     */
+    public static RequestDeadline requestDeadline(ServletRequest servletRequest) {
+        return (RequestDeadline) servletRequest.getAttribute(REQUEST_DEADLINE);
+    }
+
+    /**
+     * Per-request state reused between requests. It holds the extract carrier and everything needed to finish
+     * the span, and it is registered as the listener of async requests. The state returns to the pool once the
+     * span is finished, after {@link AsyncListener#onComplete(AsyncEvent)} for async requests. A state handled
+     * by {@link AsyncTimeoutPolicy} on timeout is not pooled, the container may still call it after the timeout
+     * and the timer may still run it after completion.
+     */
+    private final class RequestState implements AsyncListener, Runnable {
+        private final HttpServletRequestExtractAdapter carrier =
+                new HttpServletRequestExtractAdapter(reuseCarrierEntries);
+        private Span span;
+        private boolean admitted;
+        private RequestDeadline deadline;
+        private StripedCounter routeInFlight;
+        private List<ServletFilterSpanDecorator> spanDecorators;
+        private long governorNanos;
+        private long chainEndNanos;
+        private long startNanos;
+        private long startEpochMicros;
+        private boolean error;
+        // async span is finished by exactly one of completion, timeout or grace period expiry
+        private final AtomicBoolean finished = new AtomicBoolean();
+        // set once the timeout policy finished the span or scheduled the grace period, the state is not pooled
+        private boolean timedOut;
+        private TimerWheel.Timeout timeout;
+        private HttpServletRequest timedOutRequest;
+        private HttpServletResponse timedOutResponse;
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            HttpServletRequest httpRequest = (HttpServletRequest) event.getSuppliedRequest();
+            HttpServletResponse httpResponse = (HttpServletResponse) event.getSuppliedResponse();
+            for (int i = 0; i < spanDecorators.size(); i++) {
+                spanDecorators.get(i).onResponse(httpRequest, httpResponse, span);
+            }
+            finishSpan(httpRequest, httpResponse, this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            // span may have been finished on timeout or after grace period by another thread
+            Span span = this.span;
+            List<ServletFilterSpanDecorator> spanDecorators = this.spanDecorators;
+            if (finished.get() || span == null || spanDecorators == null) {
+                return;
+            }
+            HttpServletRequest httpRequest = (HttpServletRequest) event.getSuppliedRequest();
+            HttpServletResponse httpResponse = (HttpServletResponse) event.getSuppliedResponse();
+            for (int i = 0; i < spanDecorators.size(); i++) {
+                spanDecorators.get(i).onTimeout(httpRequest, httpResponse, event.getAsyncContext().getTimeout(),
+                        span);
+            }
+
+            long gracePeriodNanos = asyncTimeoutPolicy.gracePeriodNanos();
+            if (gracePeriodNanos == 0) {
+                if (finished.compareAndSet(false, true)) {
+                    timedOut = true;
+                    finishSpan(httpRequest, httpResponse, this);
+                }
+            } else if (gracePeriodNanos > 0 && timeout == null) {
+                // cancellation does not stop a task the timer thread has already picked up
+                timedOut = true;
+                timedOutRequest = httpRequest;
+                timedOutResponse = httpResponse;
+                timeout = TimerWheel.shared().schedule(this, gracePeriodNanos);
+            }
+        }
+
+        /**
+         * Grace period after timeout expired on the timer thread.
+         */
+        @Override
+        public void run() {
+            if (finished.compareAndSet(false, true)) {
+                finishSpan(timedOutRequest, timedOutResponse, this);
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException {
+            Span span = this.span;
+            List<ServletFilterSpanDecorator> spanDecorators = this.spanDecorators;
+            if (finished.get() || span == null || spanDecorators == null) {
+                return;
+            }
+            HttpServletRequest httpRequest = (HttpServletRequest) event.getSuppliedRequest();
+            HttpServletResponse httpResponse = (HttpServletResponse) event.getSuppliedResponse();
+            error = true;
+            for (int i = 0; i < spanDecorators.size(); i++) {
+                spanDecorators.get(i).onError(httpRequest, httpResponse, event.getThrowable(), span);
+            }
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException {
+        }
+    }
 }
@@ -0,0 +1,260 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletContext;
+
+/**
+ * Degrades tracing of {@link TracingFilter} when the node is under pressure. Watched signals are average time
+ * spent in the filter itself per request, fraction of time spent in garbage collection and number of in-flight
+ * requests. Signals are evaluated once per interval by one of the request threads. If any signal exceeds its
+ * limit the {@link Level} is lowered by one step. It is raised by one step after a number of consecutive
+ * intervals with all signals below a fraction of their limits.
+ *
+ * Register an instance via {@link ServletContext#setAttribute(String, Object)} with key
+ * {@link TracingFilter#TRACING_GOVERNOR}:
+ * <pre>
+ * {@code
+ *  servletContext.setAttribute(TracingFilter.TRACING_GOVERNOR, TracingGovernor.builder()
+ *      .maxFilterOverhead(100, TimeUnit.MICROSECONDS)
+ *      .maxGcFraction(0.1)
+ *      .maxInFlight(500)
+ *      .build());
+ * }
+ * </pre>
+ */
+public final class TracingGovernor {
+    private static final Logger log = Logger.getLogger(TracingGovernor.class.getName());
+
+    private static final double EWMA_ALPHA = 0.3;
+
+    public enum Level {
+        /**
+         * All span decorators
+         */
+        FULL,
+        /**
+         * Only {@link ServletFilterSpanDecorator#STANDARD_TAGS}
+         */
+        STANDARD_TAGS,
+        /**
+         * Only requests continuing an upstream trace are traced, with standard tags
+         */
+        SAMPLED_ONLY,
+        /**
+         * No spans, requests are only counted
+         */
+        METRICS_ONLY
+    }
+
+    private final long maxOverheadNanos;
+    private final double maxGcFraction;
+    private final long maxInFlight;
+    private final long intervalNanos;
+    private final int recoveryIntervals;
+    private final double recoveryRatio;
+    private final List<GarbageCollectorMXBean> garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final StripedCounter inFlight = new StripedCounter();
+    private final StripedCounter requests = new StripedCounter();
+    private final StripedCounter overheadNanos = new StripedCounter();
+    private final AtomicLong nextEvaluationNanos;
+    private volatile Level level = Level.FULL;
+
+    // guarded by nextEvaluationNanos, written only by the thread evaluating signals
+    private long lastEvaluationNanos;
+    private long lastRequests;
+    private long lastOverheadNanos;
+    private long lastGcMillis;
+    private volatile double overheadEwma;
+    private int calmIntervals;
+
+    private TracingGovernor(Builder builder) {
+        this.maxOverheadNanos = builder.maxOverheadNanos;
+        this.maxGcFraction = builder.maxGcFraction;
+        this.maxInFlight = builder.maxInFlight;
+        this.intervalNanos = builder.intervalNanos;
+        this.recoveryIntervals = builder.recoveryIntervals;
+        this.recoveryRatio = builder.recoveryRatio;
+        long nowNanos = System.nanoTime();
+        this.lastEvaluationNanos = nowNanos;
+        this.lastGcMillis = gcMillis();
+        this.nextEvaluationNanos = new AtomicLong(nowNanos + intervalNanos);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return current level
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @return smoothed filter overhead per request in nanoseconds as of the last evaluation
+     */
+    public double getFilterOverheadNanos() {
+        return overheadEwma;
+    }
+
+    /**
+     * Returns current level, evaluates signals if the interval elapsed.
+     */
+    Level level(long nowNanos) {
+        long next = nextEvaluationNanos.get();
+        if (nowNanos - next >= 0 && nextEvaluationNanos.compareAndSet(next, nowNanos + intervalNanos)) {
+            evaluate(nowNanos, gcMillis());
+        }
+        return level;
+    }
+
+    void requestStarted() {
+        inFlight.add(1);
+    }
+
+    /**
+     * @param overheadNanos time spent in the filter excluding the filter chain
+     */
+    void requestFinished(long overheadNanos) {
+        inFlight.add(-1);
+        requests.add(1);
+        this.overheadNanos.add(overheadNanos);
+    }
+
+    void evaluate(long nowNanos, long gcMillis) {
+        long requestsSum = requests.sum();
+        long overheadSum = overheadNanos.sum();
+        if (requestsSum > lastRequests) {
+            double overhead = (overheadSum - lastOverheadNanos) / (double) (requestsSum - lastRequests);
+            overheadEwma = overheadEwma == 0 ? overhead : overheadEwma + EWMA_ALPHA * (overhead - overheadEwma);
+        }
+        long elapsedNanos = nowNanos - lastEvaluationNanos;
+        double gcFraction = elapsedNanos > 0
+                ? TimeUnit.MILLISECONDS.toNanos(gcMillis - lastGcMillis) / (double) elapsedNanos : 0;
+        lastRequests = requestsSum;
+        lastOverheadNanos = overheadSum;
+        lastGcMillis = gcMillis;
+        lastEvaluationNanos = nowNanos;
+
+        double pressure = Math.max(ratio(overheadEwma, maxOverheadNanos),
+                Math.max(ratio(gcFraction, maxGcFraction), ratio(inFlight.sum(), maxInFlight)));
+        Level current = level;
+        if (pressure > 1) {
+            calmIntervals = 0;
+            if (current.ordinal() < Level.METRICS_ONLY.ordinal()) {
+                changeLevel(Level.values()[current.ordinal() + 1], pressure);
+            }
+        } else if (pressure < recoveryRatio) {
+            if (++calmIntervals >= recoveryIntervals && current != Level.FULL) {
+                calmIntervals = 0;
+                changeLevel(Level.values()[current.ordinal() - 1], pressure);
+            }
+        } else {
+            calmIntervals = 0;
+        }
+    }
+
+    private void changeLevel(Level newLevel, double pressure) {
+        log.info("Tracing level changed from " + level + " to " + newLevel + ", pressure " + pressure);
+        level = newLevel;
+    }
+
+    private static double ratio(double value, double limit) {
+        return limit > 0 ? value / limit : 0;
+    }
+
+    long gcMillis() {
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean garbageCollector: garbageCollectors) {
+            gcMillis += Math.max(garbageCollector.getCollectionTime(), 0);
+        }
+        return gcMillis;
+    }
+
+    public static final class Builder {
+        private long maxOverheadNanos;
+        private double maxGcFraction;
+        private long maxInFlight;
+        private long intervalNanos = TimeUnit.SECONDS.toNanos(1);
+        private int recoveryIntervals = 5;
+        private double recoveryRatio = 0.7;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maxOverhead maximum average time spent in the filter per request, excluding the filter chain
+         * @param unit time unit
+         * @return builder
+         */
+        public Builder maxFilterOverhead(long maxOverhead, TimeUnit unit) {
+            this.maxOverheadNanos = unit.toNanos(maxOverhead);
+            return this;
+        }
+
+        /**
+         * @param maxGcFraction maximum fraction of time spent in garbage collection e.g. 0.1
+         * @return builder
+         */
+        public Builder maxGcFraction(double maxGcFraction) {
+            this.maxGcFraction = maxGcFraction;
+            return this;
+        }
+
+        /**
+         * @param maxInFlight maximum number of in-flight requests passing the filter
+         * @return builder
+         */
+        public Builder maxInFlight(long maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * @param interval interval of signal evaluation, default 1 second
+         * @param unit time unit
+         * @return builder
+         */
+        public Builder evaluationInterval(long interval, TimeUnit unit) {
+            this.intervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * @param recoveryIntervals number of consecutive calm intervals before level is raised, default 5
+         * @param recoveryRatio signals below this fraction of their limits are calm, default 0.7
+         * @return builder
+         */
+        public Builder recovery(int recoveryIntervals, double recoveryRatio) {
+            this.recoveryIntervals = recoveryIntervals;
+            this.recoveryRatio = recoveryRatio;
+            return this;
+        }
+
+        public TracingGovernor build() {
+            return new TracingGovernor(this);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package io.opentracing.contrib.web.servlet.filter.decorator;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * HeaderRedaction transforms a header value before it is added as a tag by {@link ServletFilterHeaderSpanDecorator}.
+ * Instances are built once when the decorator is configured, constant parts of the result are precomputed so that
+ * {@link #apply(String)} only allocates the returned string, or nothing at all when the value can be returned as is.
+ * {@link #hmacSha256(byte[])} additionally clones a {@link Mac} initialized with the key.
+ */
+public abstract class HeaderRedaction {
+
+    /**
+     * Value used by {@link #mask()}.
+     */
+    public static final String MASK = "***";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final HeaderRedaction NONE = new HeaderRedaction() {
+        @Override
+        public String apply(String value) {
+            return value;
+        }
+    };
+
+    private static final HeaderRedaction MASK_ALL = new Mask(MASK);
+
+    HeaderRedaction() {
+    }
+
+    /**
+     * @param value non-empty header value
+     * @return value of the tag
+     */
+    public abstract String apply(String value);
+
+    /**
+     * @return redaction which keeps the value unchanged
+     */
+    public static HeaderRedaction none() {
+        return NONE;
+    }
+
+    /**
+     * @return redaction which replaces the whole value with {@link #MASK}
+     */
+    public static HeaderRedaction mask() {
+        return MASK_ALL;
+    }
+
+    /**
+     * @param replacement constant value to record instead of the header value
+     * @return redaction which replaces the whole value with replacement
+     */
+    public static HeaderRedaction mask(String replacement) {
+        if (replacement == null) {
+            throw new NullPointerException("replacement");
+        }
+        return new Mask(replacement);
+    }
+
+    /**
+     * @param maxLength maximum number of characters to keep
+     * @return redaction which cuts the value after maxLength characters
+     */
+    public static HeaderRedaction truncate(int maxLength) {
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("maxLength must not be negative");
+        }
+        return new Truncate(maxLength, "");
+    }
+
+    /**
+     * Keeps a prefix of the value, e.g. the authentication scheme, and replaces the rest with {@link #MASK}.
+     * Values not longer than length are masked completely, so that short secrets are never recorded.
+     *
+     * @param length number of leading characters to keep
+     * @return redaction which keeps only the first length characters
+     */
+    public static HeaderRedaction prefix(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length must not be negative");
+        }
+        return new Truncate(length, MASK);
+    }
+
+    /**
+     * Replaces the value with hex encoded HmacSHA256 of its UTF-8 bytes. Equal values produce equal tags, which allows
+     * correlating requests of the same client without recording the credential itself.
+     *
+     * @param key secret key of the hash, it should not be shared with consumers of the traces
+     * @return redaction which records the keyed hash of the value
+     */
+    public static HeaderRedaction hmacSha256(byte[] key) {
+        return new Hmac("HmacSHA256", key);
+    }
+
+    private static final class Mask extends HeaderRedaction {
+        private final String replacement;
+
+        Mask(String replacement) {
+            this.replacement = replacement;
+        }
+
+        @Override
+        public String apply(String value) {
+            return replacement;
+        }
+    }
+
+    private static final class Truncate extends HeaderRedaction {
+        private final int length;
+        private final String suffix;
+
+        Truncate(int length, String suffix) {
+            this.length = length;
+            this.suffix = suffix;
+        }
+
+        @Override
+        public String apply(String value) {
+            if (value.length() <= length) {
+                // prefix redaction masks values which would be kept whole
+                return suffix.isEmpty() ? value : suffix;
+            }
+            if (suffix.isEmpty()) {
+                return value.substring(0, length);
+            }
+            return new StringBuilder(length + suffix.length())
+                    .append(value, 0, length)
+                    .append(suffix)
+                    .toString();
+        }
+    }
+
+    private static final class Hmac extends HeaderRedaction {
+        private final String algorithm;
+        private final SecretKeySpec keySpec;
+        // initialized prototype, Mac is not thread safe and a per-thread cache would pin the webapp classloader
+        private final Mac prototype;
+
+        Hmac(String algorithm, byte[] key) {
+            if (key == null || key.length == 0) {
+                throw new IllegalArgumentException("key must not be empty");
+            }
+            this.algorithm = algorithm;
+            this.keySpec = new SecretKeySpec(Arrays.copyOf(key, key.length), algorithm);
+            // fail fast on unsupported algorithm or key
+            this.prototype = newMac(algorithm, keySpec);
+        }
+
+        private Mac mac() {
+            try {
+                return (Mac) prototype.clone();
+            } catch (CloneNotSupportedException e) {
+                return newMac(algorithm, keySpec);
+            }
+        }
+
+        @Override
+        public String apply(String value) {
+            byte[] hash = mac().doFinal(value.getBytes(UTF_8));
+            char[] chars = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                chars[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+                chars[2 * i + 1] = HEX[hash[i] & 0xf];
+            }
+            return new String(chars);
+        }
+
+        private static Mac newMac(String algorithm, SecretKeySpec keySpec) {
+            try {
+                Mac mac = Mac.getInstance(algorithm);
+                mac.init(keySpec);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalArgumentException("Cannot initialize " + algorithm, e);
+            }
+        }
+    }
+}
@@ -13,11 +13,15 @@ import javax.servlet.http.HttpServletResponse;
  * Incoming are compared to the list of {@link #allowedHeaders}, if the header is part of the provided list,
  * they will be added as {@link StringTag}.
  * The tag format will be a concatenation of {@link #prefix} and {@link HeaderEntry#tag}
+ * Values are transformed by {@link HeaderEntry#redaction} and cut after {@link #maxValueLength} characters.
  */
 public class ServletFilterHeaderSpanDecorator implements ServletFilterSpanDecorator {
 
     private final String prefix;
     private final List<HeaderEntry> allowedHeaders;
+    private final int maxValueLength;
+    private final HeaderEntry[] entries;
+    private final StringTag[] tags;
 
     /**
      * Constructor of ServletFilterHeaderSpanDecorator with a default prefix of "http.header."
@@ -33,16 +37,39 @@ public class ServletFilterHeaderSpanDecorator implements ServletFilterSpanDecora
      * @param prefix the prefix to prepend on each @{@link StringTag}. Can be null is not prefix is desired
      */
     public ServletFilterHeaderSpanDecorator(List<HeaderEntry> allowedHeaders, String prefix) {
+        this(allowedHeaders, prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor of ServletFilterHeaderSpanDecorator
+     * @param allowedHeaders list of {@link HeaderEntry} to extract from the incoming request
+     * @param prefix the prefix to prepend on each @{@link StringTag}. Can be null is not prefix is desired
+     * @param maxValueLength maximum number of characters of a tag value, longer values are cut after redaction
+     */
+    public ServletFilterHeaderSpanDecorator(List<HeaderEntry> allowedHeaders, String prefix, int maxValueLength) {
+        if (maxValueLength <= 0) {
+            throw new IllegalArgumentException("maxValueLength must be positive");
+        }
         this.allowedHeaders = new ArrayList<>(allowedHeaders);
         this.prefix = (prefix != null && !prefix.isEmpty()) ? prefix : null;
+        this.maxValueLength = maxValueLength;
+        this.entries = this.allowedHeaders.toArray(new HeaderEntry[0]);
+        this.tags = new StringTag[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            tags[i] = buildTag(entries[i].getTag());
+        }
     }
 
     @Override
     public void onRequest(HttpServletRequest httpServletRequest, Span span) {
-        for (HeaderEntry headerEntry : allowedHeaders) {
-            String headerValue = httpServletRequest.getHeader(headerEntry.getHeader());
+        for (int i = 0; i < entries.length; i++) {
+            String headerValue = httpServletRequest.getHeader(entries[i].getHeader());
             if (headerValue != null && !headerValue.isEmpty()) {
-                buildTag(headerEntry.getTag()).set(span, headerValue);
+                String value = entries[i].getRedaction().apply(headerValue);
+                if (value.length() > maxValueLength) {
+                    value = value.substring(0, maxValueLength);
+                }
+                tags[i].set(span, value);
             }
         }
     }
@@ -77,22 +104,41 @@ public class ServletFilterHeaderSpanDecorator implements ServletFilterSpanDecora
         return this.allowedHeaders;
     }
 
+    public int getMaxValueLength() {
+        return this.maxValueLength;
+    }
+
     /**
      * HeaderEntry is used to configure {@link ServletFilterHeaderSpanDecorator}
      * {@link #header} is used to check if the header exists using {@link HttpServletRequest#getHeader(String)}
      * {@link #tag} will be used as a {@link StringTag} if {@link #header} is found on the incoming request
+     * {@link #redaction} is applied to the header value before it is added as a tag
      */
     public static class HeaderEntry {
         private final String header;
         private final String tag;
+        private final HeaderRedaction redaction;
 
         /**
          * @param header Header on the {@link HttpServletRequest}
          * @param tag Tag to be used if {@link #header} is found
          */
         public HeaderEntry(String header, String tag) {
+            this(header, tag, HeaderRedaction.none());
+        }
+
+        /**
+         * @param header Header on the {@link HttpServletRequest}
+         * @param tag Tag to be used if {@link #header} is found
+         * @param redaction transformation of the header value, e.g. {@link HeaderRedaction#mask()}
+         */
+        public HeaderEntry(String header, String tag, HeaderRedaction redaction) {
+            if (redaction == null) {
+                throw new NullPointerException("redaction");
+            }
             this.header = header;
             this.tag = tag;
+            this.redaction = redaction;
         }
         public String getHeader() {
             return this.header;
@@ -102,6 +148,10 @@ public class ServletFilterHeaderSpanDecorator implements ServletFilterSpanDecora
             return this.tag;
         }
 
+        public HeaderRedaction getRedaction() {
+            return this.redaction;
+        }
+
     }
 
 }
@@ -0,0 +1,236 @@
+package io.opentracing.contrib.web.servlet.filter.decorator;
+
+import io.opentracing.Span;
+import io.opentracing.contrib.web.servlet.filter.ServletFilterSpanDecorator;
+import io.opentracing.tag.StringTag;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * ServletFilterQueryParameterSpanDecorator will decorate the span with selected query parameters.
+ * The raw {@link HttpServletRequest#getQueryString()} is scanned for the names of {@link #parameters}, parameter map
+ * is never used because it parses the whole query and, for form posts, the request body.
+ * Only the first occurrence of a parameter is used, names are compared without decoding, values are URL decoded.
+ * Values are cut after {@link #maxValueLength} characters. If {@link ParameterEntry#maxValues} is set, only the
+ * first distinct values seen are recorded and the rest is tagged as {@link #OTHER}.
+ */
+public class ServletFilterQueryParameterSpanDecorator implements ServletFilterSpanDecorator {
+
+    public static final String OTHER = "other";
+
+    private final String prefix;
+    private final List<ParameterEntry> parameters;
+    private final int maxValueLength;
+    private final ParameterEntry[] entries;
+    private final StringTag[] tags;
+    private final ValueLimiter[] limiters;
+
+    /**
+     * Constructor of ServletFilterQueryParameterSpanDecorator with a default prefix of "http.query." and no value
+     * length limit
+     * @param parameters list of {@link ParameterEntry} to extract from the query string, at most 64
+     */
+    public ServletFilterQueryParameterSpanDecorator(List<ParameterEntry> parameters) {
+        this(parameters, "http.query.", Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor of ServletFilterQueryParameterSpanDecorator
+     * @param parameters list of {@link ParameterEntry} to extract from the query string, at most 64
+     * @param prefix the prefix to prepend on each @{@link StringTag}. Can be null is not prefix is desired
+     * @param maxValueLength maximum number of characters of a tag value
+     */
+    public ServletFilterQueryParameterSpanDecorator(List<ParameterEntry> parameters, String prefix,
+            int maxValueLength) {
+        if (parameters.size() > 64) {
+            throw new IllegalArgumentException("At most 64 parameters are supported");
+        }
+        if (maxValueLength <= 0) {
+            throw new IllegalArgumentException("maxValueLength must be positive");
+        }
+        this.parameters = new ArrayList<>(parameters);
+        this.prefix = (prefix != null && !prefix.isEmpty()) ? prefix : null;
+        this.maxValueLength = maxValueLength;
+        this.entries = this.parameters.toArray(new ParameterEntry[0]);
+        this.tags = new StringTag[entries.length];
+        this.limiters = new ValueLimiter[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            tags[i] = new StringTag(this.prefix == null ? entries[i].getTag() : this.prefix + entries[i].getTag());
+            if (entries[i].getMaxValues() > 0) {
+                limiters[i] = new ValueLimiter(entries[i].getMaxValues());
+            }
+        }
+    }
+
+    @Override
+    public void onRequest(HttpServletRequest httpServletRequest, Span span) {
+        String query = httpServletRequest.getQueryString();
+        if (query == null || query.isEmpty()) {
+            return;
+        }
+
+        // bit per entry which has already been tagged
+        long found = 0;
+        int length = query.length();
+        int start = 0;
+        while (start < length) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            int equals = query.indexOf('=', start);
+            if (equals < 0 || equals > end) {
+                equals = end;
+            }
+            int nameLength = equals - start;
+            for (int i = 0; i < entries.length; i++) {
+                String name = entries[i].getParameter();
+                if ((found & (1L << i)) == 0 && name.length() == nameLength
+                        && query.regionMatches(start, name, 0, nameLength)) {
+                    found |= 1L << i;
+                    if (equals + 1 < end) {
+                        tags[i].set(span, value(i, query, equals + 1, end));
+                    }
+                    break;
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    @Override
+    public void onResponse(HttpServletRequest httpServletRequest,
+        HttpServletResponse httpServletResponse, Span span) {
+    }
+
+    @Override
+    public void onError(HttpServletRequest httpServletRequest,
+        HttpServletResponse httpServletResponse, Throwable exception, Span span) {
+    }
+
+    @Override
+    public void onTimeout(HttpServletRequest httpServletRequest,
+        HttpServletResponse httpServletResponse, long timeout, Span span) {
+    }
+
+    private String value(int index, String query, int start, int end) {
+        String value = decode(query, start, end);
+        if (value.length() > maxValueLength) {
+            value = value.substring(0, maxValueLength);
+        }
+        return limiters[index] == null ? value : limiters[index].limit(value);
+    }
+
+    static String decode(String query, int start, int end) {
+        String raw = query.substring(start, end);
+        for (int i = start; i < end; i++) {
+            char c = query.charAt(i);
+            if (c == '%' || c == '+') {
+                try {
+                    return URLDecoder.decode(raw, "UTF-8");
+                } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                    // malformed escape sequence, keep the raw value
+                    return raw;
+                }
+            }
+        }
+        return raw;
+    }
+
+    public String getPrefix() {
+        return this.prefix;
+    }
+
+    public List<ParameterEntry> getParameters() {
+        return this.parameters;
+    }
+
+    public int getMaxValueLength() {
+        return this.maxValueLength;
+    }
+
+    /**
+     * Admits first maxValues distinct values, the set is never cleared so tag values stay stable.
+     */
+    private static final class ValueLimiter {
+        private final int maxValues;
+        private final Set<String> values = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final AtomicInteger size = new AtomicInteger();
+
+        ValueLimiter(int maxValues) {
+            this.maxValues = maxValues;
+        }
+
+        String limit(String value) {
+            if (values.contains(value)) {
+                return value;
+            }
+            if (size.get() >= maxValues) {
+                return OTHER;
+            }
+            if (size.incrementAndGet() > maxValues) {
+                size.decrementAndGet();
+                return OTHER;
+            }
+            if (!values.add(value)) {
+                // added concurrently by another thread
+                size.decrementAndGet();
+            }
+            return value;
+        }
+    }
+
+    /**
+     * ParameterEntry is used to configure {@link ServletFilterQueryParameterSpanDecorator}
+     * {@link #parameter} is the name of the query parameter
+     * {@link #tag} will be used as a {@link StringTag} if {@link #parameter} is found in the query string
+     * {@link #maxValues} limits the number of distinct values of the tag, 0 means no limit
+     */
+    public static class ParameterEntry {
+        private final String parameter;
+        private final String tag;
+        private final int maxValues;
+
+        /**
+         * @param parameter Name of the query parameter
+         * @param tag Tag to be used if {@link #parameter} is found
+         */
+        public ParameterEntry(String parameter, String tag) {
+            this(parameter, tag, 0);
+        }
+
+        /**
+         * @param parameter Name of the query parameter
+         * @param tag Tag to be used if {@link #parameter} is found
+         * @param maxValues maximum number of distinct values, others are tagged as {@link #OTHER}. 0 means no limit
+         */
+        public ParameterEntry(String parameter, String tag, int maxValues) {
+            if (maxValues < 0) {
+                throw new IllegalArgumentException("maxValues must not be negative");
+            }
+            this.parameter = parameter;
+            this.tag = tag;
+            this.maxValues = maxValues;
+        }
+
+        public String getParameter() {
+            return this.parameter;
+        }
+
+        public String getTag() {
+            return this.tag;
+        }
+
+        public int getMaxValues() {
+            return this.maxValues;
+        }
+    }
+}
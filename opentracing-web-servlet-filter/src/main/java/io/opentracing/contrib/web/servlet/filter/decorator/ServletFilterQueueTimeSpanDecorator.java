@@ -0,0 +1,150 @@
+package io.opentracing.contrib.web.servlet.filter.decorator;
+
+import io.opentracing.Span;
+import io.opentracing.contrib.web.servlet.filter.ServletFilterSpanDecorator;
+import io.opentracing.tag.IntTag;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * ServletFilterQueueTimeSpanDecorator will decorate the span with the time the request spent queued in front of
+ * the servlet container, based on a request start header set by a proxy or load balancer.
+ * Supported header values are {@code t=<timestamp>} or {@code <timestamp>} where timestamp is epoch seconds with
+ * optional fraction (e.g. nginx {@code $msec}), milliseconds, microseconds or nanoseconds.
+ * The first present header of {@link #headers} is used, the queue time is added as {@link #QUEUE_TIME} tag and
+ * optionally as a {@link #QUEUE_START_EVENT} log with the timestamp of the request start.
+ */
+public class ServletFilterQueueTimeSpanDecorator implements ServletFilterSpanDecorator {
+
+    public static final List<String> DEFAULT_HEADERS = Arrays.asList("X-Request-Start", "X-Queue-Start");
+    public static final IntTag QUEUE_TIME = new IntTag("http.queue_time_us");
+    public static final String QUEUE_START_EVENT = "queue.start";
+
+    // 2001-09-09 in seconds, values between this and the same instant in milliseconds are seconds and so on
+    private static final long MIN_EPOCH_SECONDS = 1000000000L;
+    private static final long MIN_EPOCH_MILLIS = MIN_EPOCH_SECONDS * 1000;
+    private static final long MIN_EPOCH_MICROS = MIN_EPOCH_MILLIS * 1000;
+    private static final long MIN_EPOCH_NANOS = MIN_EPOCH_MICROS * 1000;
+
+    private final String[] headers;
+    private final boolean logQueueStart;
+
+    /**
+     * Constructor of ServletFilterQueueTimeSpanDecorator using {@link #DEFAULT_HEADERS} and no log.
+     */
+    public ServletFilterQueueTimeSpanDecorator() {
+        this(DEFAULT_HEADERS, false);
+    }
+
+    /**
+     * Constructor of ServletFilterQueueTimeSpanDecorator
+     * @param headers headers with request start timestamp in order of preference
+     * @param logQueueStart whether to add {@link #QUEUE_START_EVENT} log at the request start timestamp
+     */
+    public ServletFilterQueueTimeSpanDecorator(List<String> headers, boolean logQueueStart) {
+        this.headers = new ArrayList<>(headers).toArray(new String[0]);
+        this.logQueueStart = logQueueStart;
+    }
+
+    @Override
+    public void onRequest(HttpServletRequest httpServletRequest, Span span) {
+        for (String header : headers) {
+            String headerValue = httpServletRequest.getHeader(header);
+            if (headerValue != null) {
+                long startMicros = parseEpochMicros(headerValue);
+                if (startMicros > 0) {
+                    long queueMicros = System.currentTimeMillis() * 1000 - startMicros;
+                    if (queueMicros >= 0) {
+                        QUEUE_TIME.set(span, (int) Math.min(queueMicros, Integer.MAX_VALUE));
+                        if (logQueueStart) {
+                            span.log(startMicros, QUEUE_START_EVENT);
+                        }
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onResponse(HttpServletRequest httpServletRequest,
+        HttpServletResponse httpServletResponse, Span span) {
+    }
+
+    @Override
+    public void onError(HttpServletRequest httpServletRequest,
+        HttpServletResponse httpServletResponse, Throwable exception, Span span) {
+    }
+
+    @Override
+    public void onTimeout(HttpServletRequest httpServletRequest,
+        HttpServletResponse httpServletResponse, long timeout, Span span) {
+    }
+
+    /**
+     * Parses request start timestamp without allocations.
+     * @param value header value
+     * @return epoch microseconds or -1 if the value is not valid
+     */
+    static long parseEpochMicros(String value) {
+        int length = value.length();
+        int i = 0;
+        if (length > 1 && value.charAt(0) == 't' && value.charAt(1) == '=') {
+            i = 2;
+        }
+
+        long integer = 0;
+        int integerDigits = 0;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (++integerDigits > 19) {
+                return -1;
+            }
+            integer = integer * 10 + (c - '0');
+        }
+        if (integerDigits == 0 || integer < 0) {
+            return -1;
+        }
+
+        if (i < length && value.charAt(i) == '.') {
+            // seconds with fraction, only microseconds precision is kept
+            long fractionMicros = 0;
+            int fractionDigits = 0;
+            for (i++; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                if (fractionDigits < 6) {
+                    fractionMicros = fractionMicros * 10 + (c - '0');
+                    fractionDigits++;
+                }
+            }
+            for (; fractionDigits < 6; fractionDigits++) {
+                fractionMicros *= 10;
+            }
+            return integer >= MIN_EPOCH_SECONDS && integer < MIN_EPOCH_MILLIS
+                ? integer * 1000000 + fractionMicros : -1;
+        }
+        if (i != length) {
+            return -1;
+        }
+
+        if (integer < MIN_EPOCH_SECONDS) {
+            return -1;
+        } else if (integer < MIN_EPOCH_MILLIS) {
+            return integer * 1000000;
+        } else if (integer < MIN_EPOCH_MICROS) {
+            return integer * 1000;
+        } else if (integer < MIN_EPOCH_NANOS) {
+            return integer;
+        }
+        return integer / 1000;
+    }
+}
@@ -0,0 +1,149 @@
+package io.opentracing.contrib.web.servlet.filter.decorator;
+
+import io.opentracing.Span;
+import io.opentracing.contrib.web.servlet.filter.ServletFilterSpanDecorator;
+import io.opentracing.contrib.web.servlet.filter.TracingFilter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * ServletFilterThreadResourcesSpanDecorator will decorate the span with CPU time and heap allocated by the request
+ * thread, measured with {@link ThreadMXBean} at {@link #onRequest(HttpServletRequest, Span)} and
+ * {@link #onResponse(HttpServletRequest, HttpServletResponse, Span)}.
+ * Only synchronous requests are tagged, async requests (marked with {@link TracingFilter#ASYNC_STARTED}) continue
+ * on other threads and their deltas would not belong to the request.
+ * The decorator runs for traced requests only and skips spans dropped by the trace id sampler (marked with
+ * {@link TracingFilter#NOT_SAMPLED}), {@link #sampleRate} further limits the fraction of requests measured.
+ * Allocated bytes are available on HotSpot based JVMs only, CPU time if the JVM supports and enables it.
+ */
+public class ServletFilterThreadResourcesSpanDecorator implements ServletFilterSpanDecorator {
+
+    public static final String CPU_TIME = "thread.cpu_time_us";
+    public static final String ALLOCATED_BYTES = "thread.allocated_bytes";
+
+    static final String SAMPLE_ATTRIBUTE = ServletFilterThreadResourcesSpanDecorator.class.getName() + ".sample";
+
+    private final double sampleRate;
+    private final ThreadMXBean threadMXBean;
+    private final com.sun.management.ThreadMXBean allocationMXBean;
+
+    /**
+     * Constructor of ServletFilterThreadResourcesSpanDecorator measuring all traced requests.
+     */
+    public ServletFilterThreadResourcesSpanDecorator() {
+        this(1);
+    }
+
+    /**
+     * Constructor of ServletFilterThreadResourcesSpanDecorator
+     * @param sampleRate fraction of traced requests to measure, between 0 and 1
+     */
+    public ServletFilterThreadResourcesSpanDecorator(double sampleRate) {
+        this(sampleRate, ManagementFactory.getThreadMXBean());
+    }
+
+    ServletFilterThreadResourcesSpanDecorator(double sampleRate, ThreadMXBean threadMXBean) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+        }
+        this.sampleRate = sampleRate;
+        this.threadMXBean = threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean : null;
+        this.allocationMXBean = allocationMXBean(threadMXBean);
+    }
+
+    @Override
+    public void onRequest(HttpServletRequest httpServletRequest, Span span) {
+        if ((threadMXBean == null && allocationMXBean == null)
+                || httpServletRequest.getAttribute(TracingFilter.NOT_SAMPLED) != null
+                || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        Thread thread = Thread.currentThread();
+        httpServletRequest.setAttribute(SAMPLE_ATTRIBUTE,
+                new Sample(thread.getId(), cpuTime(), allocatedBytes(thread.getId())));
+    }
+
+    @Override
+    public void onResponse(HttpServletRequest httpServletRequest,
+        HttpServletResponse httpServletResponse, Span span) {
+        tagDeltas(httpServletRequest, span);
+    }
+
+    @Override
+    public void onError(HttpServletRequest httpServletRequest,
+        HttpServletResponse httpServletResponse, Throwable exception, Span span) {
+        tagDeltas(httpServletRequest, span);
+    }
+
+    @Override
+    public void onTimeout(HttpServletRequest httpServletRequest,
+        HttpServletResponse httpServletResponse, long timeout, Span span) {
+    }
+
+    private void tagDeltas(HttpServletRequest httpServletRequest, Span span) {
+        Object attribute = httpServletRequest.getAttribute(SAMPLE_ATTRIBUTE);
+        if (!(attribute instanceof Sample)) {
+            return;
+        }
+        httpServletRequest.removeAttribute(SAMPLE_ATTRIBUTE);
+        Sample sample = (Sample) attribute;
+        long threadId = Thread.currentThread().getId();
+        if (sample.threadId != threadId || httpServletRequest.isAsyncStarted()
+                || httpServletRequest.getAttribute(TracingFilter.ASYNC_STARTED) != null) {
+            return;
+        }
+        if (sample.cpuTime >= 0) {
+            long cpuTime = cpuTime();
+            if (cpuTime >= sample.cpuTime) {
+                span.setTag(CPU_TIME, (cpuTime - sample.cpuTime) / 1000);
+            }
+        }
+        if (sample.allocatedBytes >= 0) {
+            long allocatedBytes = allocatedBytes(threadId);
+            if (allocatedBytes >= sample.allocatedBytes) {
+                span.setTag(ALLOCATED_BYTES, allocatedBytes - sample.allocatedBytes);
+            }
+        }
+    }
+
+    /**
+     * @return CPU time of the current thread in nanoseconds or -1 if not available
+     */
+    private long cpuTime() {
+        return threadMXBean != null ? threadMXBean.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * @return bytes allocated by the thread or -1 if not available
+     */
+    private long allocatedBytes(long threadId) {
+        return allocationMXBean != null ? allocationMXBean.getThreadAllocatedBytes(threadId) : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationMXBean(ThreadMXBean threadMXBean) {
+        try {
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+                return allocationMXBean.isThreadAllocatedMemorySupported() ? allocationMXBean : null;
+            }
+        } catch (LinkageError e) {
+            // not a HotSpot based JVM
+        }
+        return null;
+    }
+
+    private static final class Sample {
+        private final long threadId;
+        private final long cpuTime;
+        private final long allocatedBytes;
+
+        private Sample(long threadId, long cpuTime, long allocatedBytes) {
+            this.threadId = threadId;
+            this.cpuTime = cpuTime;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+}
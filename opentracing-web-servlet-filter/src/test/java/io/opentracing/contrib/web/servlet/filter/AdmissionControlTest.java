@@ -0,0 +1,179 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.servlet.Filter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.awaitility.Awaitility;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.hamcrest.core.IsEqual;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opentracing.Span;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMapAdapter;
+import io.opentracing.tag.Tags;
+import okhttp3.Headers;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+public class AdmissionControlTest extends AbstractJettyTest {
+
+    private BaggagePriorityAdmissionControl admissionControl = new BaggagePriorityAdmissionControl(10, 0, 1, 0);
+
+    @Override
+    protected void initServletContext(ServletContextHandler servletContext) {
+        servletContext.setAttribute(TracingFilter.ADMISSION_CONTROL, admissionControl);
+    }
+
+    @Override
+    protected Filter tracingFilter() {
+        return new TracingFilter(mockTracer, Arrays.asList(ServletFilterSpanDecorator.STANDARD_TAGS,
+                new FailingSpanDecorator()), Pattern.compile("/health"));
+    }
+
+    @Test
+    public void testLowPriorityRejected() throws IOException {
+        Response response;
+        {
+            OkHttpClient client = new OkHttpClient();
+            Request request = new Request.Builder()
+                    .url(localRequestUrl("/hello"))
+                    .build();
+
+            response = client.newCall(request).execute();
+            Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(1));
+        }
+
+        Assert.assertEquals(429, response.code());
+        Assert.assertEquals("1", response.header("Retry-After"));
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        assertOnErrors(mockSpans);
+
+        MockSpan mockSpan = mockSpans.get(0);
+        Assert.assertEquals("low-priority", mockSpan.tags().get(TracingFilter.ADMISSION_REJECTED.getKey()));
+        Assert.assertEquals(429, mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertEquals(0, admissionControl.getInFlight());
+    }
+
+    @Test
+    public void testHighPriorityAdmitted() throws IOException {
+        Response response = requestWithBaggage(BaggagePriorityAdmissionControl.PRIORITY_BAGGAGE_KEY, "1");
+
+        Assert.assertEquals(202, response.code());
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(2, mockSpans.size());
+        assertOnErrors(mockSpans);
+
+        MockSpan mockSpan = mockSpans.get(1);
+        Assert.assertNull(mockSpan.tags().get(TracingFilter.ADMISSION_REJECTED.getKey()));
+        Assert.assertEquals(202, mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertEquals(0, admissionControl.getInFlight());
+    }
+
+    @Test
+    public void testDeadlineExceededRejected() throws IOException {
+        Response response = requestWithBaggage(BaggagePriorityAdmissionControl.DEADLINE_BAGGAGE_KEY,
+                String.valueOf(System.currentTimeMillis() - 1000));
+
+        Assert.assertEquals(503, response.code());
+
+        MockSpan mockSpan = mockTracer.finishedSpans().get(1);
+        Assert.assertEquals("deadline-exceeded", mockSpan.tags().get(TracingFilter.ADMISSION_REJECTED.getKey()));
+        Assert.assertEquals(503, mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+    }
+
+    @Test
+    public void testReleasedOnFailureBeforeChain() throws IOException {
+        MockSpan parent = mockTracer.buildSpan("parent").start();
+        parent.setBaggageItem(BaggagePriorityAdmissionControl.PRIORITY_BAGGAGE_KEY, "1");
+        parent.finish();
+
+        Map<String, String> injectMap = new HashMap<>();
+        mockTracer.inject(parent.context(), Format.Builtin.HTTP_HEADERS, new TextMapAdapter(injectMap));
+        injectMap.put(FailingSpanDecorator.FAIL_HEADER, "true");
+
+        Response response = new OkHttpClient().newCall(new Request.Builder()
+                .url(localRequestUrl("/hello"))
+                .headers(Headers.of(injectMap))
+                .build()).execute();
+
+        Assert.assertEquals(500, response.code());
+        Assert.assertEquals(0, admissionControl.getInFlight());
+    }
+
+    private Response requestWithBaggage(String key, String value) throws IOException {
+        MockSpan parent = mockTracer.buildSpan("parent").start();
+        parent.setBaggageItem(key, value);
+        parent.finish();
+
+        Map<String, String> injectMap = new HashMap<>();
+        mockTracer.inject(parent.context(), Format.Builtin.HTTP_HEADERS, new TextMapAdapter(injectMap));
+
+        OkHttpClient client = new OkHttpClient();
+        Request request = new Request.Builder()
+                .url(localRequestUrl("/hello"))
+                .headers(Headers.of(injectMap))
+                .build();
+
+        Response response = client.newCall(request).execute();
+        Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(2));
+        return response;
+    }
+
+    /**
+     * Fails requests with {@link #FAIL_HEADER} before the filter chain is entered.
+     */
+    private static class FailingSpanDecorator implements ServletFilterSpanDecorator {
+        static final String FAIL_HEADER = "x-fail-decorator";
+
+        @Override
+        public void onRequest(HttpServletRequest httpServletRequest, Span span) {
+            if (httpServletRequest.getHeader(FAIL_HEADER) != null) {
+                throw new IllegalStateException("decorator failure");
+            }
+        }
+
+        @Override
+        public void onResponse(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+                Span span) {
+        }
+
+        @Override
+        public void onError(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+                Throwable exception, Span span) {
+        }
+
+        @Override
+        public void onTimeout(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+                long timeout, Span span) {
+        }
+    }
+}
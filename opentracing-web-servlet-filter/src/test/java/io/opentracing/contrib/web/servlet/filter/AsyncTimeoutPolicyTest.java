@@ -0,0 +1,268 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.awaitility.Awaitility;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.hamcrest.core.IsEqual;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+public class AsyncTimeoutPolicyTest extends AbstractJettyTest {
+
+    @Rule
+    public TestName testName = new TestName();
+
+    // blocks container completion of /blockedCompletion until the test checks the span
+    private final CountDownLatch completion = new CountDownLatch(1);
+
+    @Override
+    protected void initServletContext(ServletContextHandler servletContext) {
+        servletContext.setAttribute(TracingFilter.ASYNC_TIMEOUT_POLICY,
+                testName.getMethodName().startsWith("testFinishOnTimeout") ? AsyncTimeoutPolicy.finishOnTimeout()
+                        : AsyncTimeoutPolicy.finishAfter(50, TimeUnit.MILLISECONDS));
+        servletContext.addServlet(new ServletHolder(new BlockedCompletionServlet(completion)), "/blockedCompletion");
+    }
+
+    @After
+    public void releaseCompletion() {
+        completion.countDown();
+    }
+
+    @Test
+    public void testFinishOnTimeout() throws IOException {
+        call("/blockedCompletion");
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(reportedSpansSize(), IsEqual.equalTo(1));
+
+        MockSpan mockSpan = mockTracer.finishedSpans().get(0);
+        assertOnErrors(mockTracer.finishedSpans());
+        Assert.assertNull(mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertEquals(1, mockSpan.logEntries().size());
+        Assert.assertEquals("timeout", mockSpan.logEntries().get(0).fields().get("event"));
+
+        completion.countDown();
+        assertNoMoreSpans();
+    }
+
+    @Test
+    public void testFinishOnTimeoutCompletedRequest() throws IOException {
+        call("/asyncTimeout");
+        Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(1));
+        assertNoMoreSpans();
+        Assert.assertEquals(1, mockTracer.finishedSpans().get(0).logEntries().size());
+    }
+
+    @Test
+    public void testFinishAfterGracePeriod() throws IOException {
+        call("/blockedCompletion");
+        // container has not completed the request, the span is finished by the timer
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(reportedSpansSize(), IsEqual.equalTo(1));
+
+        MockSpan mockSpan = mockTracer.finishedSpans().get(0);
+        assertOnErrors(mockTracer.finishedSpans());
+        Assert.assertEquals("timeout", mockSpan.logEntries().get(0).fields().get("event"));
+
+        completion.countDown();
+        assertNoMoreSpans();
+    }
+
+    @Test
+    public void testCompletedWithinGracePeriod() throws IOException {
+        call("/asyncTimeout");
+        Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(1));
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        assertOnErrors(mockSpans);
+        // finished on completion, after the response status is set
+        Assert.assertEquals(500, mockSpans.get(0).tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertEquals(1, mockSpans.get(0).logEntries().size());
+        assertNoMoreSpans();
+    }
+
+    @Test
+    public void testGraceTimerRacingCompletion() throws Exception {
+        MockTracer tracer = new MockTracer();
+        TracingFilter filter = new TracingFilter(tracer);
+        ServletContext servletContext = Mockito.mock(ServletContext.class);
+        Mockito.when(servletContext.getAttribute(TracingFilter.ASYNC_TIMEOUT_POLICY))
+                .thenReturn(AsyncTimeoutPolicy.finishAfter(1, TimeUnit.MINUTES));
+        FilterConfig filterConfig = Mockito.mock(FilterConfig.class);
+        Mockito.when(filterConfig.getServletContext()).thenReturn(servletContext);
+        filter.init(filterConfig);
+
+        // the timer thread picked up the grace period task before completion cancelled it,
+        // it runs after the next request started
+        AsyncEvent first = startAsync(filter);
+        AsyncListener listener = listener(first);
+        listener.onTimeout(first);
+        listener.onComplete(first);
+        AsyncEvent second = startAsync(filter);
+        ((Runnable) listener).run();
+        Assert.assertEquals(1, tracer.finishedSpans().size());
+        listener(second).onComplete(second);
+        Assert.assertEquals(2, tracer.finishedSpans().size());
+
+        for (int i = 0; i < 200; i++) {
+            AsyncEvent event = startAsync(filter);
+            final AsyncListener racingListener = listener(event);
+            racingListener.onTimeout(event);
+            Thread timer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ((Runnable) racingListener).run();
+                }
+            });
+            timer.start();
+            racingListener.onComplete(event);
+            AsyncEvent next = startAsync(filter);
+            timer.join();
+            listener(next).onComplete(next);
+        }
+        Assert.assertEquals(402, tracer.finishedSpans().size());
+        assertOnErrors(tracer.finishedSpans());
+    }
+
+    /**
+     * Runs an async request through the filter, the event refers to its request, response and context.
+     */
+    private static AsyncEvent startAsync(TracingFilter filter) throws IOException, ServletException {
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        AsyncContext asyncContext = Mockito.mock(AsyncContext.class);
+        Mockito.when(request.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+        Mockito.when(request.getMethod()).thenReturn("GET");
+        Mockito.when(request.getRequestURL()).thenAnswer(new Answer<StringBuffer>() {
+            @Override
+            public StringBuffer answer(InvocationOnMock invocation) {
+                return new StringBuffer("http://localhost/async");
+            }
+        });
+        Mockito.when(request.getHeaderNames()).thenReturn(Collections.<String>emptyEnumeration());
+        Mockito.when(request.isAsyncStarted()).thenReturn(true);
+        Mockito.when(request.getAsyncContext()).thenReturn(asyncContext);
+        filter.doFilter(request, response, Mockito.mock(FilterChain.class));
+        return new AsyncEvent(asyncContext, request, response);
+    }
+
+    private static AsyncListener listener(AsyncEvent event) {
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        Mockito.verify(event.getAsyncContext()).addListener(listener.capture());
+        return listener.getValue();
+    }
+
+    private void call(String path) {
+        OkHttpClient client = new OkHttpClient.Builder().readTimeout(10, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(false).build();
+        client.newCall(new Request.Builder().url(localRequestUrl(path)).build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        });
+    }
+
+    private void assertNoMoreSpans() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(300);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Assert.assertEquals(1, mockTracer.finishedSpans().size());
+        assertOnErrors(mockTracer.finishedSpans());
+    }
+
+    public static class BlockedCompletionServlet extends HttpServlet {
+        private final CountDownLatch completion;
+
+        public BlockedCompletionServlet(CountDownLatch completion) {
+            this.completion = completion;
+        }
+
+        @Override
+        public void doGet(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException {
+            // avoid retries on timeout
+            if (request.getAttribute("timedOut") != null) {
+                return;
+            }
+            request.setAttribute("timedOut", true);
+
+            AsyncContext asyncContext = request.startAsync(request, response);
+            asyncContext.setTimeout(10);
+            // registered before the filter's listener, it delays completion of the filter
+            asyncContext.addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) throws IOException {
+                    try {
+                        completion.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,81 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.awaitility.Awaitility;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.hamcrest.core.IsEqual;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.tag.Tags;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+public class BufferSpanEventsTest extends AbstractJettyTest {
+
+    @Override
+    protected void initServletContext(ServletContextHandler servletContext) {
+        servletContext.setAttribute(TracingFilter.BUFFER_SPAN_EVENTS, Boolean.TRUE);
+    }
+
+    @Test
+    public void testStandardTagsBuffered() throws IOException {
+        request("/hello");
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        assertOnErrors(mockSpans);
+
+        MockSpan mockSpan = mockSpans.get(0);
+        Assert.assertEquals(Tags.SPAN_KIND_SERVER, mockSpan.tags().get(Tags.SPAN_KIND.getKey()));
+        Assert.assertEquals(localRequestUrl("/hello"), mockSpan.tags().get(Tags.HTTP_URL.getKey()));
+        Assert.assertEquals(202, mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+    }
+
+    @Test
+    public void testErrorLogBuffered() throws IOException {
+        request("/servletException");
+
+        MockSpan mockSpan = mockTracer.finishedSpans().get(0);
+        Assert.assertEquals(500, mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertEquals(Boolean.TRUE, mockSpan.tags().get(Tags.ERROR.getKey()));
+        Assert.assertEquals(1, mockSpan.logEntries().size());
+        Assert.assertEquals(ExceptionServlet.EXCEPTION_MESSAGE,
+                mockSpan.logEntries().get(0).fields().get("message"));
+    }
+
+    @Test
+    public void testAsyncBuffered() throws IOException {
+        request("/async");
+
+        MockSpan mockSpan = mockTracer.finishedSpans().get(0);
+        Assert.assertEquals(204, mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+    }
+
+    private void request(String path) throws IOException {
+        OkHttpClient client = new OkHttpClient();
+        Request request = new Request.Builder()
+                .url(localRequestUrl(path))
+                .build();
+
+        client.newCall(request).execute();
+        Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(1));
+    }
+}
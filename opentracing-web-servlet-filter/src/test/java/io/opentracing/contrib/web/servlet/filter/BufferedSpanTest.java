@@ -0,0 +1,113 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.opentracing.Span;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+
+public class BufferedSpanTest {
+
+    private MockTracer mockTracer = new MockTracer();
+    private MockSpan serverSpan;
+
+    @Before
+    public void before() {
+        serverSpan = mockTracer.buildSpan("GET").start();
+    }
+
+    @Test
+    public void testTagsAndLogsAppliedOnFinish() {
+        Span span = BufferedSpan.of(serverSpan);
+        span.setTag("string", "value")
+                .setTag("boolean", true)
+                .setTag("number", 1);
+        Tags.HTTP_STATUS.set(span, 200);
+        span.log(Collections.singletonMap("event", "first"));
+        span.log(42, "second");
+
+        Assert.assertTrue(serverSpan.tags().isEmpty());
+        Assert.assertTrue(serverSpan.logEntries().isEmpty());
+
+        span.finish();
+
+        List<MockSpan> finishedSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, finishedSpans.size());
+        MockSpan mockSpan = finishedSpans.get(0);
+        Assert.assertEquals("value", mockSpan.tags().get("string"));
+        Assert.assertEquals(true, mockSpan.tags().get("boolean"));
+        Assert.assertEquals(1, mockSpan.tags().get("number"));
+        Assert.assertEquals(200, mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertEquals(2, mockSpan.logEntries().size());
+        Assert.assertEquals("first", mockSpan.logEntries().get(0).fields().get("event"));
+        Assert.assertTrue(mockSpan.logEntries().get(0).timestampMicros() > 0);
+        Assert.assertEquals("second", mockSpan.logEntries().get(1).fields().get("event"));
+        Assert.assertEquals(42, mockSpan.logEntries().get(1).timestampMicros());
+    }
+
+    @Test
+    public void testUnsampledDropsEvents() {
+        Span span = BufferedSpan.of(serverSpan);
+        span.setTag("string", "value");
+        span.log("event");
+        Tags.SAMPLING_PRIORITY.set(span, 0);
+
+        Assert.assertEquals(0, serverSpan.tags().get(Tags.SAMPLING_PRIORITY.getKey()));
+
+        span.finish();
+
+        MockSpan mockSpan = mockTracer.finishedSpans().get(0);
+        Assert.assertEquals(1, mockSpan.tags().size());
+        Assert.assertTrue(mockSpan.logEntries().isEmpty());
+    }
+
+    @Test
+    public void testPassThrough() {
+        Span span = BufferedSpan.of(serverSpan);
+        span.setBaggageItem("foo", "bar");
+        span.setOperationName("POST");
+
+        Assert.assertSame(serverSpan.context(), span.context());
+        Assert.assertEquals("bar", serverSpan.getBaggageItem("foo"));
+        Assert.assertEquals("bar", span.getBaggageItem("foo"));
+        Assert.assertEquals("POST", serverSpan.operationName());
+    }
+
+    @Test
+    public void testReusedAfterFinish() {
+        Span span = BufferedSpan.of(serverSpan);
+        for (int i = 0; i < 20; i++) {
+            span.setTag("tag" + i, i);
+        }
+        Tags.SAMPLING_PRIORITY.set(span, 0);
+        span.finish();
+
+        MockSpan secondServerSpan = mockTracer.buildSpan("GET").start();
+        Span secondSpan = BufferedSpan.of(secondServerSpan);
+        Assert.assertSame(span, secondSpan);
+        secondSpan.setTag("foo", "bar");
+        secondSpan.finish();
+
+        Assert.assertEquals(Collections.singletonMap("foo", "bar"), secondServerSpan.tags());
+    }
+}
@@ -0,0 +1,144 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CompositeSpanContextExtractorTest {
+
+    /**
+     * Format of {@link MockTracer.Propagator#TEXT_MAP}
+     */
+    private static final PropagationFormat MOCK = new PropagationFormat("mock",
+            Arrays.asList("traceid"), Arrays.asList("traceid", "spanid"), null);
+    private static final PropagationFormat MOCK_BAGGAGE = new PropagationFormat("mock-baggage",
+            Arrays.asList("traceid"), Arrays.asList("traceid", "spanid"), "baggage-");
+
+    @Mock
+    private HttpServletRequest request;
+
+    private MockTracer tracer = new MockTracer();
+    private HttpServletRequestExtractAdapter headers = new HttpServletRequestExtractAdapter(false);
+
+    @Before
+    public void before() {
+        headers.reset(request);
+    }
+
+    @Test
+    public void testFirstMatchShortCircuits() {
+        mockHeader("traceid", "1");
+        mockHeader("spanid", "2");
+        CompositeSpanContextExtractor extractor = CompositeSpanContextExtractor.builder()
+                .probe(MOCK)
+                .probe(PropagationFormat.B3)
+                .build();
+
+        MockSpan.MockContext spanContext = (MockSpan.MockContext) extractor.extract(tracer, request, headers);
+
+        Assert.assertEquals(1, spanContext.traceId());
+        Assert.assertEquals(2, spanContext.spanId());
+        Assert.assertEquals(Long.valueOf(1), extractor.matches().get("mock"));
+        Assert.assertEquals(Long.valueOf(0), extractor.matches().get("b3"));
+        Mockito.verify(request, Mockito.never()).getHeader("b3");
+        Mockito.verify(request, Mockito.never()).getHeaderNames();
+    }
+
+    @Test
+    public void testPresentFormatWithoutContextFallsThrough() {
+        mockHeader("b3", "80f198ee56343ba864fe8b2a57d3eff7-e457b5a2e4d86bd1-1");
+        mockHeader("traceid", "1");
+        mockHeader("spanid", "2");
+        CompositeSpanContextExtractor extractor = CompositeSpanContextExtractor.builder()
+                .probe(PropagationFormat.B3)
+                .probe(MOCK)
+                .build();
+
+        MockSpan.MockContext spanContext = (MockSpan.MockContext) extractor.extract(tracer, request, headers);
+
+        Assert.assertEquals(1, spanContext.traceId());
+        Assert.assertEquals(Long.valueOf(0), extractor.matches().get("b3"));
+        Assert.assertEquals(Long.valueOf(1), extractor.matches().get("mock"));
+    }
+
+    @Test
+    public void testBaggagePrefixIteratesAllHeaders() {
+        mockHeader("traceid", "1");
+        mockHeader("spanid", "2");
+        Mockito.when(request.getHeaderNames())
+                .thenReturn(Collections.enumeration(Arrays.asList("traceid", "spanid", "baggage-foo")));
+        Mockito.when(request.getHeaders("traceid")).thenReturn(Collections.enumeration(Arrays.asList("1")));
+        Mockito.when(request.getHeaders("spanid")).thenReturn(Collections.enumeration(Arrays.asList("2")));
+        Mockito.when(request.getHeaders("baggage-foo")).thenReturn(Collections.enumeration(Arrays.asList("bar")));
+        CompositeSpanContextExtractor extractor = CompositeSpanContextExtractor.builder()
+                .probe(MOCK_BAGGAGE)
+                .build();
+
+        MockSpan.MockContext spanContext = (MockSpan.MockContext) extractor.extract(tracer, request, headers);
+
+        Assert.assertEquals("bar", spanContext.getBaggageItem("foo"));
+    }
+
+    @Test
+    public void testNoMatch() {
+        CompositeSpanContextExtractor extractor = CompositeSpanContextExtractor.builder()
+                .probe(PropagationFormat.W3C, new TraceParentExtractor())
+                .probe(PropagationFormat.B3)
+                .probe(PropagationFormat.JAEGER)
+                .build();
+
+        Assert.assertNull(extractor.extract(tracer, request, headers));
+        Assert.assertEquals(Arrays.asList("w3c", "b3", "jaeger", CompositeSpanContextExtractor.NO_MATCH),
+                Arrays.asList(extractor.matches().keySet().toArray()));
+        Assert.assertEquals(Long.valueOf(1), extractor.matches().get(CompositeSpanContextExtractor.NO_MATCH));
+        Mockito.verify(request, Mockito.never()).getHeaderNames();
+    }
+
+    @Test
+    public void testNoMatchFallback() {
+        Mockito.when(request.getHeaderNames())
+                .thenReturn(Collections.enumeration(Arrays.asList("traceid", "spanid")));
+        Mockito.when(request.getHeaders("traceid")).thenReturn(Collections.enumeration(Arrays.asList("1")));
+        Mockito.when(request.getHeaders("spanid")).thenReturn(Collections.enumeration(Arrays.asList("2")));
+        CompositeSpanContextExtractor extractor = CompositeSpanContextExtractor.builder()
+                .probe(PropagationFormat.B3)
+                .fallback(SpanContextExtractor.HTTP_HEADERS)
+                .build();
+
+        MockSpan.MockContext spanContext = (MockSpan.MockContext) extractor.extract(tracer, request, headers);
+
+        Assert.assertEquals(1, spanContext.traceId());
+        Assert.assertEquals(Long.valueOf(1), extractor.matches().get(CompositeSpanContextExtractor.NO_MATCH));
+    }
+
+    private void mockHeader(String name, String value) {
+        Mockito.when(request.getHeader(name)).thenReturn(value);
+    }
+}
@@ -0,0 +1,62 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.awaitility.Awaitility;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.hamcrest.core.IsEqual;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opentracing.mock.MockSpan;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+public class DispatchTracingLogTest extends AbstractJettyTest {
+
+    @Override
+    protected void initServletContext(ServletContextHandler servletContext) {
+        servletContext.setAttribute(TracingFilter.DISPATCH_TRACING, DispatchTracing.LOG);
+        servletContext.addServlet(DispatchTracingTest.ForwardServlet.class, "/forward");
+    }
+
+    @Test
+    public void testForwardLog() throws IOException {
+        OkHttpClient client = new OkHttpClient();
+        Request request = new Request.Builder()
+                .url(localRequestUrl("/forward"))
+                .build();
+
+        Response response = client.newCall(request).execute();
+        Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(1));
+        Assert.assertEquals(202, response.code());
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        assertOnErrors(mockSpans);
+
+        List<MockSpan.LogEntry> logEntries = mockSpans.get(0).logEntries();
+        Assert.assertEquals(1, logEntries.size());
+        Map<String, ?> fields = logEntries.get(0).fields();
+        Assert.assertEquals("forward", fields.get("event"));
+        Assert.assertEquals("/hello", fields.get("path"));
+        Assert.assertTrue(fields.get("duration_us") instanceof Long);
+    }
+}
@@ -0,0 +1,185 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.awaitility.Awaitility;
+import org.eclipse.jetty.servlet.ErrorPageErrorHandler;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.hamcrest.core.IsEqual;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.tag.Tags;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+public class DispatchTracingTest extends AbstractJettyTest {
+
+    @Rule
+    public TestName testName = new TestName();
+
+    @Override
+    protected void initServletContext(ServletContextHandler servletContext) {
+        servletContext.setAttribute(TracingFilter.DISPATCH_TRACING, DispatchTracing.SPAN);
+        if (testName.getMethodName().equals("testSkippedErrorDispatch")) {
+            servletContext.setAttribute(TracingFilter.SKIP_RULES, SkipRules.builder()
+                    .skipDispatcherTypes(DispatcherType.ERROR)
+                    .build());
+        }
+        servletContext.addServlet(ForwardServlet.class, "/forward");
+        servletContext.addServlet(IncludeServlet.class, "/include");
+        servletContext.addServlet(ErrorPageServlet.class, "/errorPage");
+
+        ErrorPageErrorHandler errorHandler = new ErrorPageErrorHandler();
+        errorHandler.addErrorPage(HttpServletResponse.SC_NOT_FOUND, "/errorPage");
+        servletContext.setErrorHandler(errorHandler);
+
+        // second filter in the chain, e.g. registered by a framework
+        servletContext.addFilter(new FilterHolder(tracingFilter()), "/*", EnumSet.of(DispatcherType.REQUEST));
+    }
+
+    @Test
+    public void testSecondFilterDoesNotTraceAgain() throws IOException {
+        Response response = request("/hello", 1);
+        Assert.assertEquals(202, response.code());
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        assertOnErrors(mockSpans);
+        Assert.assertEquals(0, mockSpans.get(0).parentId());
+        Assert.assertEquals(Tags.SPAN_KIND_SERVER, mockSpans.get(0).tags().get(Tags.SPAN_KIND.getKey()));
+    }
+
+    @Test
+    public void testForwardSpan() throws IOException {
+        Response response = request("/forward", 2);
+        Assert.assertEquals(202, response.code());
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(2, mockSpans.size());
+        assertOnErrors(mockSpans);
+
+        MockSpan dispatchSpan = mockSpans.get(0);
+        MockSpan serverSpan = mockSpans.get(1);
+        Assert.assertEquals("FORWARD", dispatchSpan.operationName());
+        Assert.assertEquals("/hello", dispatchSpan.tags().get(TracingFilter.DISPATCH_PATH.getKey()));
+        Assert.assertEquals(serverSpan.context().spanId(), dispatchSpan.parentId());
+        Assert.assertEquals(Tags.SPAN_KIND_SERVER, serverSpan.tags().get(Tags.SPAN_KIND.getKey()));
+        Assert.assertEquals(202, serverSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+    }
+
+    @Test
+    public void testIncludeSpan() throws IOException {
+        request("/include", 2);
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(2, mockSpans.size());
+        assertOnErrors(mockSpans);
+
+        MockSpan dispatchSpan = mockSpans.get(0);
+        Assert.assertEquals("INCLUDE", dispatchSpan.operationName());
+        Assert.assertEquals("/hello", dispatchSpan.tags().get(TracingFilter.DISPATCH_PATH.getKey()));
+        Assert.assertEquals(mockSpans.get(1).context().spanId(), dispatchSpan.parentId());
+    }
+
+    @Test
+    public void testErrorDispatchSpan() throws IOException {
+        request("/nonexisting", 2);
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(2, mockSpans.size());
+
+        MockSpan dispatchSpan = mockSpans.get(0);
+        MockSpan serverSpan = mockSpans.get(1);
+        Assert.assertEquals("GET", serverSpan.operationName());
+        Assert.assertEquals(404, serverSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertEquals("ERROR", dispatchSpan.operationName());
+        Assert.assertEquals("/errorPage", dispatchSpan.tags().get(TracingFilter.DISPATCH_PATH.getKey()));
+        Assert.assertEquals(serverSpan.context().spanId(), dispatchSpan.parentId());
+    }
+
+    @Test
+    public void testSkippedErrorDispatch() throws IOException {
+        request("/nonexisting", 1);
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        assertOnErrors(mockSpans);
+        Assert.assertEquals("GET", mockSpans.get(0).operationName());
+        Assert.assertEquals(404, mockSpans.get(0).tags().get(Tags.HTTP_STATUS.getKey()));
+    }
+
+    @Test
+    public void testRequestWithoutDispatch() throws IOException {
+        request("/hello", 1);
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        Assert.assertEquals("GET", mockSpans.get(0).operationName());
+    }
+
+    private Response request(String path, int expectedSpans) throws IOException {
+        OkHttpClient client = new OkHttpClient();
+        Request request = new Request.Builder()
+                .url(localRequestUrl(path))
+                .build();
+
+        Response response = client.newCall(request).execute();
+        Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(expectedSpans));
+        return response;
+    }
+
+    public static class ForwardServlet extends HttpServlet {
+
+        @Override
+        public void doGet(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException {
+            request.getRequestDispatcher("/hello").forward(request, response);
+        }
+    }
+
+    public static class IncludeServlet extends HttpServlet {
+
+        @Override
+        public void doGet(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException {
+            request.getRequestDispatcher("/hello").include(request, response);
+        }
+    }
+
+    public static class ErrorPageServlet extends HttpServlet {
+
+        @Override
+        public void doGet(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException {
+            response.getWriter().write("not found");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HttpServletRequestExtractAdapterTest {
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Test
+    public void testReusableAdapter() {
+        Mockito.when(request.getHeaderNames())
+                .thenReturn(Collections.enumeration(Arrays.asList("traceid", "baggage-foo", "empty")));
+        Mockito.when(request.getHeaders("traceid")).thenReturn(Collections.enumeration(Arrays.asList("1")));
+        Mockito.when(request.getHeaders("baggage-foo"))
+                .thenReturn(Collections.enumeration(Arrays.asList("bar", "baz")));
+        Mockito.when(request.getHeaders("empty")).thenReturn(Collections.<String>emptyEnumeration());
+
+        HttpServletRequestExtractAdapter adapter = new HttpServletRequestExtractAdapter(false);
+        adapter.reset(request);
+
+        Assert.assertEquals(Arrays.<Map.Entry<String, String>>asList(
+                new AbstractMap.SimpleImmutableEntry<>("traceid", "1"),
+                new AbstractMap.SimpleImmutableEntry<>("baggage-foo", "bar"),
+                new AbstractMap.SimpleImmutableEntry<>("baggage-foo", "baz")),
+                toList(adapter.iterator()));
+
+        adapter.reset(null);
+        Assert.assertFalse(adapter.iterator().hasNext());
+    }
+
+    @Test
+    public void testReuseEntries() {
+        Mockito.when(request.getHeaderNames())
+                .thenReturn(Collections.enumeration(Arrays.asList("traceid", "spanid")));
+        Mockito.when(request.getHeaders("traceid")).thenReturn(Collections.enumeration(Arrays.asList("1")));
+        Mockito.when(request.getHeaders("spanid")).thenReturn(Collections.enumeration(Arrays.asList("2")));
+
+        HttpServletRequestExtractAdapter adapter = new HttpServletRequestExtractAdapter(true);
+        adapter.reset(request);
+
+        Iterator<Map.Entry<String, String>> iterator = adapter.iterator();
+        Map.Entry<String, String> first = iterator.next();
+        Assert.assertEquals("traceid", first.getKey());
+        Assert.assertEquals("1", first.getValue());
+        Assert.assertSame(first, iterator.next());
+        Assert.assertEquals("spanid", first.getKey());
+        Assert.assertEquals("2", first.getValue());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testNullHeaderNames() {
+        HttpServletRequestExtractAdapter adapter = new HttpServletRequestExtractAdapter(false);
+        adapter.reset(request);
+
+        Assert.assertFalse(adapter.iterator().hasNext());
+    }
+
+    private static List<Map.Entry<String, String>> toList(Iterator<Map.Entry<String, String>> iterator) {
+        List<Map.Entry<String, String>> entries = new ArrayList<>();
+        while (iterator.hasNext()) {
+            entries.add(iterator.next());
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,91 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.awaitility.Awaitility;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.hamcrest.core.IsEqual;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opentracing.mock.MockSpan;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+public class InFlightRequestsTest extends AbstractJettyTest {
+
+    private InFlightRequests inFlightRequests = new InFlightRequests();
+
+    @Override
+    protected void initServletContext(ServletContextHandler servletContext) {
+        servletContext.setAttribute(TracingFilter.IN_FLIGHT_REQUESTS, inFlightRequests);
+    }
+
+    @Test
+    public void testHelloRequest() throws IOException {
+        {
+            OkHttpClient client = new OkHttpClient();
+            Request request = new Request.Builder()
+                    .url(localRequestUrl("/hello"))
+                    .build();
+
+            client.newCall(request).execute();
+            Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(1));
+        }
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        assertOnErrors(mockSpans);
+
+        MockSpan mockSpan = mockSpans.get(0);
+        Assert.assertEquals(1, mockSpan.tags().get(TracingFilter.IN_FLIGHT.getKey()));
+        Assert.assertEquals(1, mockSpan.tags().get(TracingFilter.IN_FLIGHT_ROUTE.getKey()));
+        Assert.assertEquals(0, inFlightRequests.get());
+        Assert.assertEquals(0, inFlightRequests.get("/hello"));
+    }
+
+    @Test
+    public void testAsync() throws IOException {
+        {
+            OkHttpClient client = new OkHttpClient();
+            Request request = new Request.Builder()
+                    .url(localRequestUrl("/async"))
+                    .build();
+
+            client.newCall(request).execute();
+            Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(1));
+        }
+
+        MockSpan mockSpan = mockTracer.finishedSpans().get(0);
+        Assert.assertEquals(1, mockSpan.tags().get(TracingFilter.IN_FLIGHT_ROUTE.getKey()));
+        Assert.assertEquals(0, inFlightRequests.get("/async"));
+        Assert.assertEquals(0, inFlightRequests.get());
+    }
+
+    @Test
+    public void testMaxRoutes() {
+        InFlightRequests inFlightRequests = new InFlightRequests(1);
+        inFlightRequests.route("/a").add(1);
+        inFlightRequests.route("/b").add(1);
+        inFlightRequests.route(null).add(1);
+
+        Assert.assertEquals(1, inFlightRequests.get("/a"));
+        Assert.assertEquals(0, inFlightRequests.get("/b"));
+        Assert.assertEquals(Long.valueOf(2), inFlightRequests.snapshot().get(InFlightRequests.OTHER_ROUTE));
+    }
+}
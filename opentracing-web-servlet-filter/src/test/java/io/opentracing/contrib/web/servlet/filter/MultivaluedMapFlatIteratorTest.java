@@ -101,4 +101,23 @@ public class MultivaluedMapFlatIteratorTest {
         Assert.assertEquals(new AbstractMap.SimpleImmutableEntry<>("key2", "value2"), iterator.next());
         Assert.assertFalse(iterator.hasNext());
     }
+
+    @Test
+    public void testReuseEntries() {
+        Map<String, List<String>> map = new TreeMap<>();
+        map.put("key", new ArrayList<>(Arrays.asList("value1", "value2")));
+        map.put("key2", Collections.<String>emptyList());
+
+        HttpServletRequestExtractAdapter.MultivaluedMapFlatIterator<String, String> iterator = new
+                HttpServletRequestExtractAdapter.MultivaluedMapFlatIterator<>(map.entrySet(), true);
+
+        Map.Entry<String, String> first = iterator.next();
+        Assert.assertEquals(new AbstractMap.SimpleImmutableEntry<>("key", "value1"), first);
+        Assert.assertEquals(new AbstractMap.SimpleImmutableEntry<>("key", "value1").hashCode(), first.hashCode());
+        Map.Entry<String, String> second = iterator.next();
+        Assert.assertSame(first, second);
+        Assert.assertEquals(new AbstractMap.SimpleImmutableEntry<>("key", "value2"), second);
+        Assert.assertEquals(new AbstractMap.SimpleImmutableEntry<>("key2", null), iterator.next());
+        Assert.assertFalse(iterator.hasNext());
+    }
 }
@@ -0,0 +1,47 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ObjectPoolTest {
+
+    @Test
+    public void testAcquireRelease() {
+        ObjectPool<Object> pool = new ObjectPool<>(16);
+        Assert.assertNull(pool.acquire());
+
+        Object first = new Object();
+        Object second = new Object();
+        Assert.assertTrue(pool.release(first));
+        Assert.assertTrue(pool.release(second));
+
+        Object acquired = pool.acquire();
+        Assert.assertTrue(acquired == first || acquired == second);
+        Object other = pool.acquire();
+        Assert.assertTrue(other != acquired && (other == first || other == second));
+        Assert.assertNull(pool.acquire());
+    }
+
+    @Test
+    public void testFullPoolDrops() {
+        ObjectPool<Object> pool = new ObjectPool<>(1);
+        for (int i = 0; i < 8; i++) {
+            Assert.assertTrue(pool.release(new Object()));
+        }
+        Assert.assertFalse(pool.release(new Object()));
+    }
+}
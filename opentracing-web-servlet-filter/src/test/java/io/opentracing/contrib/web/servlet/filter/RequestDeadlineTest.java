@@ -0,0 +1,122 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.awaitility.Awaitility;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.hamcrest.core.IsEqual;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opentracing.mock.MockSpan;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+public class RequestDeadlineTest extends AbstractJettyTest {
+
+    @Override
+    protected void initServletContext(ServletContextHandler servletContext) {
+        servletContext.setAttribute(TracingFilter.DEADLINE_HEADER, "grpc-timeout");
+        servletContext.addServlet(DeadlineServlet.class, "/deadline");
+    }
+
+    @Test
+    public void testDeadlineWithinBudget() throws IOException {
+        Response response = requestWithTimeout("10S");
+
+        Assert.assertTrue(Long.parseLong(response.header("X-Remaining")) > 0);
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        assertOnErrors(mockSpans);
+        Assert.assertNull(mockSpans.get(0).tags().get(TracingFilter.DEADLINE_EXCEEDED.getKey()));
+    }
+
+    @Test
+    public void testDeadlineExceeded() throws IOException {
+        requestWithTimeout("1m");
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        assertOnErrors(mockSpans);
+        Assert.assertEquals(Boolean.TRUE, mockSpans.get(0).tags().get(TracingFilter.DEADLINE_EXCEEDED.getKey()));
+    }
+
+    @Test
+    public void testLargeBudgetNotExpired() {
+        long budgetNanos = RequestDeadline.parseTimeoutNanos("99999999H");
+        Assert.assertTrue(budgetNanos > RequestDeadline.MAX_BUDGET_NANOS);
+
+        RequestDeadline deadline = new RequestDeadline(Long.MAX_VALUE - 10, budgetNanos);
+        Assert.assertEquals(RequestDeadline.MAX_BUDGET_NANOS, deadline.getBudgetNanos());
+        deadline = new RequestDeadline(System.nanoTime(), budgetNanos);
+        Assert.assertFalse(deadline.isExpired());
+        Assert.assertTrue(deadline.remainingNanos() > 0);
+        deadline = new RequestDeadline(System.nanoTime(), Long.MIN_VALUE);
+        Assert.assertTrue(deadline.isExpired());
+    }
+
+    @Test
+    public void testParseTimeout() {
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(250), RequestDeadline.parseTimeoutNanos("250"));
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(250), RequestDeadline.parseTimeoutNanos("250m"));
+        Assert.assertEquals(TimeUnit.HOURS.toNanos(1), RequestDeadline.parseTimeoutNanos("1H"));
+        Assert.assertEquals(TimeUnit.MINUTES.toNanos(2), RequestDeadline.parseTimeoutNanos("2M"));
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(3), RequestDeadline.parseTimeoutNanos("3S"));
+        Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(4), RequestDeadline.parseTimeoutNanos("4u"));
+        Assert.assertEquals(5, RequestDeadline.parseTimeoutNanos("5n"));
+        Assert.assertEquals(-1, RequestDeadline.parseTimeoutNanos(""));
+        Assert.assertEquals(-1, RequestDeadline.parseTimeoutNanos("m"));
+        Assert.assertEquals(-1, RequestDeadline.parseTimeoutNanos("10x"));
+        Assert.assertEquals(-1, RequestDeadline.parseTimeoutNanos("10mm"));
+    }
+
+    private Response requestWithTimeout(String timeout) throws IOException {
+        OkHttpClient client = new OkHttpClient();
+        Request request = new Request.Builder()
+                .url(localRequestUrl("/deadline"))
+                .header("grpc-timeout", timeout)
+                .build();
+
+        Response response = client.newCall(request).execute();
+        Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(1));
+        return response;
+    }
+
+    public static class DeadlineServlet extends HttpServlet {
+
+        @Override
+        public void doGet(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException {
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.setHeader("X-Remaining",
+                    String.valueOf(TracingFilter.requestDeadline(request).remaining(TimeUnit.MILLISECONDS)));
+        }
+    }
+}
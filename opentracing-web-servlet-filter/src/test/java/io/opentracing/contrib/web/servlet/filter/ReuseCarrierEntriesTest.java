@@ -0,0 +1,69 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.awaitility.Awaitility;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.hamcrest.core.IsEqual;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMapAdapter;
+import okhttp3.Headers;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+public class ReuseCarrierEntriesTest extends AbstractJettyTest {
+
+    @Override
+    protected void initServletContext(ServletContextHandler servletContext) {
+        servletContext.setAttribute(TracingFilter.REUSE_CARRIER_ENTRIES, Boolean.TRUE);
+    }
+
+    @Test
+    public void testSpanContextPropagation() throws IOException {
+        MockSpan foo = mockTracer.buildSpan("foo").start();
+        foo.setBaggageItem("bar", "baz");
+        {
+            Map<String, String> injectMap = new HashMap<>();
+            mockTracer.inject(foo.context(), Format.Builtin.HTTP_HEADERS, new TextMapAdapter(injectMap));
+
+            OkHttpClient client = new OkHttpClient();
+            Request request = new Request.Builder()
+                    .url(localRequestUrl("/hello"))
+                    .headers(Headers.of(injectMap))
+                    .build();
+
+            client.newCall(request).execute();
+            Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(1));
+        }
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        assertOnErrors(mockSpans);
+
+        MockSpan mockSpan = mockSpans.get(0);
+        Assert.assertEquals(foo.context().spanId(), mockSpan.parentId());
+        Assert.assertEquals(foo.context().traceId(), mockSpan.context().traceId());
+        Assert.assertEquals("baz", mockSpan.getBaggageItem("bar"));
+    }
+}
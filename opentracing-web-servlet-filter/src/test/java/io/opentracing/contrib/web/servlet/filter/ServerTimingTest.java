@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.awaitility.Awaitility;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.hamcrest.core.IsEqual;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opentracing.mock.MockSpan;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+public class ServerTimingTest extends AbstractJettyTest {
+
+    @Override
+    protected void initServletContext(ServletContextHandler servletContext) {
+        servletContext.setAttribute(TracingFilter.SERVER_TIMING, Boolean.TRUE);
+        servletContext.setAttribute(TracingFilter.TRACE_RESPONSE, Boolean.TRUE);
+    }
+
+    @Test
+    public void testServerTimingHeaders() throws IOException {
+        Response response;
+        {
+            OkHttpClient client = new OkHttpClient();
+            Request request = new Request.Builder()
+                    .url(localRequestUrl("/hello"))
+                    .build();
+
+            response = client.newCall(request).execute();
+            Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(1));
+        }
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        assertOnErrors(mockSpans);
+
+        Assert.assertTrue(response.header(ServerTimingResponseWrapper.SERVER_TIMING_HEADER)
+                .matches("total;dur=\\d+\\.\\d{3}"));
+        // mock tracer ids are not W3C trace context ids
+        Assert.assertNull(response.header(ServerTimingResponseWrapper.TRACE_RESPONSE_HEADER));
+    }
+
+    @Test
+    public void testTraceResponseValue() {
+        Assert.assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01",
+                ServerTimingResponseWrapper.traceResponseValue("4bf92f3577b34da6a3ce929d0e0e4736", "00f067aa0ba902b7",
+                        true));
+        Assert.assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00",
+                ServerTimingResponseWrapper.traceResponseValue("4bf92f3577b34da6a3ce929d0e0e4736", "00f067aa0ba902b7",
+                        false));
+        // not padded, uppercase, decimal or all zeros
+        Assert.assertNull(ServerTimingResponseWrapper.traceResponseValue("a3ce929d0e0e4736", "f067aa0ba902b7", true));
+        Assert.assertNull(ServerTimingResponseWrapper.traceResponseValue("4BF92F3577B34DA6A3CE929D0E0E4736",
+                "00F067AA0BA902B7", true));
+        Assert.assertNull(ServerTimingResponseWrapper.traceResponseValue("12", "13", true));
+        Assert.assertNull(ServerTimingResponseWrapper.traceResponseValue("00000000000000000000000000000000",
+                "00f067aa0ba902b7", true));
+        Assert.assertNull(ServerTimingResponseWrapper.traceResponseValue("4bf92f3577b34da6a3ce929d0e0e4736",
+                "0000000000000000", true));
+    }
+
+    @Test
+    public void testServerTimingValue() {
+        Assert.assertEquals("total;dur=0.000", ServerTimingResponseWrapper.serverTimingValue(999));
+        Assert.assertEquals("total;dur=1.005", ServerTimingResponseWrapper.serverTimingValue(1005000));
+        Assert.assertEquals("total;dur=1234.567", ServerTimingResponseWrapper.serverTimingValue(1234567890));
+    }
+}
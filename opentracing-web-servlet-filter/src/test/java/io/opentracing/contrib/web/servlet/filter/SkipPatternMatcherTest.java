@@ -0,0 +1,34 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SkipPatternMatcherTest {
+
+    @Test
+    public void testMatchesWithoutContextPath() {
+        SkipPatternMatcher matcher = new SkipPatternMatcher(Pattern.compile("/health|/status/.*"));
+
+        Assert.assertTrue(matcher.matches("/context/health", "/context".length()));
+        Assert.assertTrue(matcher.matches("/status/ready", 0));
+        Assert.assertFalse(matcher.matches("/context/hello", "/context".length()));
+        Assert.assertFalse(matcher.matches("/health", "/context".length() - 1));
+        Assert.assertFalse(matcher.matches("/context/health/deep", "/context".length()));
+    }
+}
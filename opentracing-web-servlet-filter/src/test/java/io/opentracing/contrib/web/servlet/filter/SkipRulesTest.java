@@ -0,0 +1,84 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SkipRulesTest {
+
+    @Mock
+    private HttpServletRequest httpServletRequest;
+
+    private SkipRules skipRules = SkipRules.builder()
+            .skipMethods("options", "HEAD")
+            .skipDispatcherTypes(DispatcherType.ERROR)
+            .skipIfHeaderPresent("X-Internal-Probe")
+            .skipIfHeaderEquals("X-Source", "synthetic", "canary")
+            .skipIfHeaderStartsWith("User-Agent", "kube-probe/", "ELB-HealthChecker/")
+            .build();
+
+    @Before
+    public void init() {
+        Mockito.when(httpServletRequest.getMethod()).thenReturn("GET");
+        Mockito.when(httpServletRequest.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+    }
+
+    @Test
+    public void testNotSkipped() {
+        Mockito.when(httpServletRequest.getHeader("User-Agent")).thenReturn("curl/7.58.0");
+        Mockito.when(httpServletRequest.getHeader("X-Source")).thenReturn("browser");
+        Assert.assertFalse(skipRules.skip(httpServletRequest));
+    }
+
+    @Test
+    public void testSkipMethod() {
+        Mockito.when(httpServletRequest.getMethod()).thenReturn("OPTIONS");
+        Assert.assertTrue(skipRules.skip(httpServletRequest));
+    }
+
+    @Test
+    public void testSkipDispatcherType() {
+        Mockito.when(httpServletRequest.getDispatcherType()).thenReturn(DispatcherType.ERROR);
+        Assert.assertTrue(skipRules.skip(httpServletRequest));
+    }
+
+    @Test
+    public void testSkipHeaderPresent() {
+        Mockito.when(httpServletRequest.getHeader("X-Internal-Probe")).thenReturn("");
+        Assert.assertTrue(skipRules.skip(httpServletRequest));
+    }
+
+    @Test
+    public void testSkipHeaderValue() {
+        Mockito.when(httpServletRequest.getHeader("X-Source")).thenReturn("canary");
+        Assert.assertTrue(skipRules.skip(httpServletRequest));
+    }
+
+    @Test
+    public void testSkipHeaderPrefix() {
+        Mockito.when(httpServletRequest.getHeader("User-Agent")).thenReturn("kube-probe/1.27");
+        Assert.assertTrue(skipRules.skip(httpServletRequest));
+    }
+}
@@ -0,0 +1,202 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.awaitility.Awaitility;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.hamcrest.core.IsEqual;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestName;
+
+import io.opentracing.mock.MockSpan;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+public class SpanRecorderTest extends AbstractJettyTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    @Rule
+    public TestName testName = new TestName();
+
+    private File file;
+    private SpanRecorder spanRecorder;
+
+    @Override
+    protected void initServletContext(ServletContextHandler servletContext) {
+        try {
+            file = temporaryFolder.newFile("spans.bin");
+            spanRecorder = new SpanRecorder(2, file.toPath());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        servletContext.setAttribute(TracingFilter.SPAN_RECORDER, spanRecorder);
+        if (testName.getMethodName().equals("testRecordBufferedSpans")) {
+            servletContext.setAttribute(TracingFilter.BUFFER_SPAN_EVENTS, Boolean.TRUE);
+        }
+    }
+
+    @After
+    public void closeRecorder() throws IOException {
+        spanRecorder.close();
+    }
+
+    @Test
+    public void testRecordLastSpans() throws IOException {
+        OkHttpClient client = new OkHttpClient();
+        client.newCall(new Request.Builder().url(localRequestUrl("/hello")).build()).execute();
+        client.newCall(new Request.Builder().url(localRequestUrl("/hello")).build()).execute();
+        client.newCall(new Request.Builder().url(localRequestUrl("/servletException")).build()).execute();
+        Awaitility.await().until(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return spanRecorder.getRecorded();
+            }
+        }, IsEqual.equalTo(3L));
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        List<RecordedSpan> snapshot = spanRecorder.snapshot();
+        Assert.assertEquals(2, snapshot.size());
+        assertRecorded(mockSpans.get(1), 1, 202, false, snapshot.get(0));
+        assertRecorded(mockSpans.get(2), 2, 500, true, snapshot.get(1));
+
+        List<RecordedSpan> fromFile = SpanRecordReader.read(file.toPath());
+        Assert.assertEquals(2, fromFile.size());
+        assertRecorded(mockSpans.get(1), 1, 202, false, fromFile.get(0));
+        assertRecorded(mockSpans.get(2), 2, 500, true, fromFile.get(1));
+        Assert.assertEquals(snapshot.get(1).getStartEpochMicros(), fromFile.get(1).getStartEpochMicros());
+        Assert.assertEquals(snapshot.get(1).getDurationNanos(), fromFile.get(1).getDurationNanos());
+    }
+
+    @Test
+    public void testRecordBufferedSpans() throws IOException {
+        OkHttpClient client = new OkHttpClient();
+        client.newCall(new Request.Builder().url(localRequestUrl("/hello")).build()).execute();
+        client.newCall(new Request.Builder().url(localRequestUrl("/servletException")).build()).execute();
+        Awaitility.await().until(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return spanRecorder.getRecorded();
+            }
+        }, IsEqual.equalTo(2L));
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        assertOnErrors(mockSpans);
+        List<RecordedSpan> snapshot = spanRecorder.snapshot();
+        Assert.assertEquals(2, snapshot.size());
+        assertRecorded(mockSpans.get(0), 0, 202, false, snapshot.get(0));
+        assertRecorded(mockSpans.get(1), 1, 500, true, snapshot.get(1));
+    }
+
+    @Test
+    public void testCutFieldsAndSkipTornRecord() throws IOException {
+        File file = temporaryFolder.newFile();
+        try (SpanRecorder recorder = new SpanRecorder(3, file.toPath())) {
+            MockSpan.MockContext context = new MockSpan.MockContext(1, 2, Collections.<String, String>emptyMap());
+            StringBuilder path = new StringBuilder("/é");
+            for (int i = 0; i < 100; i++) {
+                path.append('a');
+            }
+            recorder.record(context, "GET", path.toString(), 200, false, 1000, 2000);
+            recorder.record(context, "POST", "/b", 201, false, 3000, 4000);
+        }
+        // sequence of the second record points to another slot as if it was being overwritten
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(SpanRecorder.HEADER_SIZE + SpanRecorder.RECORD_SIZE + SpanRecorder.SEQUENCE);
+            randomAccessFile.writeLong(3);
+        }
+
+        List<RecordedSpan> spans = SpanRecordReader.read(file.toPath());
+        Assert.assertEquals(1, spans.size());
+        Assert.assertEquals(SpanRecorder.PATH_MAX, spans.get(0).getPath().length());
+        Assert.assertTrue(spans.get(0).getPath().startsWith("/?aa"));
+        Assert.assertEquals(1000, spans.get(0).getStartEpochMicros());
+        Assert.assertEquals(2000, spans.get(0).getDurationNanos());
+    }
+
+    @Test
+    public void testConcurrentWritersDoNotTearRecords() throws Exception {
+        File file = temporaryFolder.newFile();
+        try (final SpanRecorder recorder = new SpanRecorder(1, file.toPath())) {
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread[] writers = new Thread[8];
+            for (int t = 0; t < writers.length; t++) {
+                final int base = (t + 1) * 100000;
+                writers[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int i = base; i < base + 20000; i++) {
+                            MockSpan.MockContext context = new MockSpan.MockContext(i, i,
+                                Collections.<String, String>emptyMap());
+                            recorder.record(context, "GET", "/" + i, 200, false, i, i);
+                        }
+                    }
+                });
+                writers[t].start();
+            }
+            start.countDown();
+            // read while the writers wrap around the single slot
+            for (Thread writer : writers) {
+                while (writer.isAlive()) {
+                    assertNotTorn(SpanRecordReader.read(file.toPath()));
+                }
+            }
+        }
+        assertNotTorn(SpanRecordReader.read(file.toPath()));
+    }
+
+    private static void assertNotTorn(List<RecordedSpan> spans) {
+        for (RecordedSpan span : spans) {
+            Assert.assertEquals(span.getTraceId(), span.getSpanId());
+            Assert.assertEquals("/" + span.getTraceId(), span.getPath());
+            Assert.assertEquals(Long.parseLong(span.getTraceId()), span.getStartEpochMicros());
+            Assert.assertEquals(span.getStartEpochMicros(), span.getDurationNanos());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadInvalidFile() throws IOException {
+        SpanRecordReader.read(temporaryFolder.newFile().toPath());
+    }
+
+    private void assertRecorded(MockSpan mockSpan, long sequence, int status, boolean error,
+            RecordedSpan recordedSpan) {
+        Assert.assertEquals(sequence, recordedSpan.getSequence());
+        Assert.assertEquals(mockSpan.context().toTraceId(), recordedSpan.getTraceId());
+        Assert.assertEquals(mockSpan.context().toSpanId(), recordedSpan.getSpanId());
+        Assert.assertEquals("GET", recordedSpan.getMethod());
+        Assert.assertEquals(status, recordedSpan.getStatus());
+        Assert.assertEquals(error, recordedSpan.isError());
+        Assert.assertTrue(recordedSpan.getPath().startsWith(contextPath));
+        Assert.assertTrue(recordedSpan.getDurationNanos() > 0);
+    }
+}
@@ -0,0 +1,123 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.awaitility.Awaitility;
+import org.hamcrest.core.IsEqual;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+    private final TimerWheel timerWheel = new TimerWheel(TimeUnit.MILLISECONDS.toNanos(1), 8, "test-timer");
+    private final List<Integer> executed = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void testExpiryOrder() {
+        timerWheel.schedule(task(3), TimeUnit.MILLISECONDS.toNanos(60));
+        timerWheel.schedule(task(1), TimeUnit.MILLISECONDS.toNanos(20));
+        timerWheel.schedule(task(2), TimeUnit.MILLISECONDS.toNanos(40));
+        // beyond one rotation of the wheel
+        timerWheel.schedule(task(4), TimeUnit.MILLISECONDS.toNanos(100));
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(executedSize(), IsEqual.equalTo(4));
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4), executed);
+    }
+
+    @Test
+    public void testNotExpiredEarly() {
+        long startNanos = System.nanoTime();
+        final long[] runNanos = new long[1];
+        timerWheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runNanos[0] = System.nanoTime();
+                executed.add(1);
+            }
+        }, TimeUnit.MILLISECONDS.toNanos(30));
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(executedSize(), IsEqual.equalTo(1));
+        Assert.assertTrue(runNanos[0] - startNanos >= TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        TimerWheel.Timeout timeout = timerWheel.schedule(task(1), TimeUnit.MILLISECONDS.toNanos(20));
+        timerWheel.schedule(task(2), TimeUnit.MILLISECONDS.toNanos(40));
+        timeout.cancel();
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(executedSize(), IsEqual.equalTo(1));
+        TimeUnit.MILLISECONDS.sleep(50);
+        Assert.assertEquals(Collections.singletonList(2), executed);
+    }
+
+    @Test
+    public void testFailingTask() {
+        timerWheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+        }, 0);
+        timerWheel.schedule(task(1), TimeUnit.MILLISECONDS.toNanos(10));
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(executedSize(), IsEqual.equalTo(1));
+    }
+
+    @Test
+    public void testRestartWhenIdle() {
+        timerWheel.schedule(task(1), 0);
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(executedSize(), IsEqual.equalTo(1));
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(running(), IsEqual.equalTo(false));
+
+        timerWheel.schedule(task(2), TimeUnit.MILLISECONDS.toNanos(10));
+        Assert.assertTrue(timerWheel.isRunning());
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(executedSize(), IsEqual.equalTo(2));
+    }
+
+    private Runnable task(final int id) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                executed.add(id);
+            }
+        };
+    }
+
+    private Callable<Integer> executedSize() {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return executed.size();
+            }
+        };
+    }
+
+    private Callable<Boolean> running() {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return timerWheel.isRunning();
+            }
+        };
+    }
+}
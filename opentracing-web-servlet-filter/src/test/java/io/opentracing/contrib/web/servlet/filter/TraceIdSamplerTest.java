@@ -0,0 +1,123 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.awaitility.Awaitility;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.hamcrest.core.IsEqual;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import io.opentracing.contrib.web.servlet.filter.decorator.ServletFilterThreadResourcesSpanDecorator;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.tag.Tags;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+public class TraceIdSamplerTest extends AbstractJettyTest {
+
+    @Override
+    protected void initServletContext(ServletContextHandler servletContext) {
+        servletContext.setAttribute(TracingFilter.TRACE_ID_SAMPLER, TraceIdSampler.builder()
+                .routeRate("/hello", 0)
+                .build());
+        servletContext.setAttribute(TracingFilter.SPAN_DECORATORS, Arrays.asList(
+                ServletFilterSpanDecorator.STANDARD_TAGS, new ServletFilterThreadResourcesSpanDecorator()));
+    }
+
+    @Test
+    public void testRouteRate() throws IOException {
+        OkHttpClient client = new OkHttpClient();
+        client.newCall(new Request.Builder().url(localRequestUrl("/hello")).build()).execute();
+        client.newCall(new Request.Builder().url(localRequestUrl("/currentSpan")).build()).execute();
+        Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(2));
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(0, mockSpans.get(0).tags().get(Tags.SAMPLING_PRIORITY.getKey()));
+        Assert.assertNull(mockSpans.get(1).tags().get(Tags.SAMPLING_PRIORITY.getKey()));
+        // dropped spans are not measured
+        Assert.assertNull(mockSpans.get(0).tags().get(ServletFilterThreadResourcesSpanDecorator.CPU_TIME));
+        Assert.assertNull(mockSpans.get(0).tags().get(ServletFilterThreadResourcesSpanDecorator.ALLOCATED_BYTES));
+    }
+
+    @Test
+    public void testDeterministicDecision() {
+        // pinned values, a change of the hash changes decisions across releases and nodes
+        Assert.assertEquals(-1843954265078179672L, TraceIdSampler.hash("4bf92f3577b34da6a3ce929d0e0e4736"));
+        Assert.assertEquals(3245273918957054613L, TraceIdSampler.hash("a3ce929d0e0e4736"));
+        Assert.assertEquals(8950960187928269782L, TraceIdSampler.hash("1"));
+        Assert.assertEquals(308768695523602358L, TraceIdSampler.hash("8"));
+        Assert.assertEquals(4503599627370496L, TraceIdSampler.threshold(0.5));
+        Assert.assertEquals(900719925474099L, TraceIdSampler.threshold(0.1));
+
+        long half = TraceIdSampler.threshold(0.5);
+        long tenth = TraceIdSampler.threshold(0.1);
+        Assert.assertFalse(TraceIdSampler.isSampled("4bf92f3577b34da6a3ce929d0e0e4736", half));
+        Assert.assertTrue(TraceIdSampler.isSampled("a3ce929d0e0e4736", half));
+        Assert.assertFalse(TraceIdSampler.isSampled("a3ce929d0e0e4736", tenth));
+        Assert.assertTrue(TraceIdSampler.isSampled("1", half));
+        Assert.assertFalse(TraceIdSampler.isSampled("1", tenth));
+        Assert.assertTrue(TraceIdSampler.isSampled("8", tenth));
+        Assert.assertTrue(TraceIdSampler.isSampled("1e", tenth));
+    }
+
+    @Test
+    public void testRate() {
+        long threshold = TraceIdSampler.threshold(0.1);
+        long lowerThreshold = TraceIdSampler.threshold(0.05);
+        int sampled = 0;
+        for (long i = 1; i <= 100000; i++) {
+            // sequential ids, as generated by some tracers
+            String traceId = Long.toHexString(i);
+            if (TraceIdSampler.isSampled(traceId, threshold)) {
+                sampled++;
+            } else {
+                Assert.assertFalse(TraceIdSampler.isSampled(traceId, lowerThreshold));
+            }
+        }
+        Assert.assertEquals(10000, sampled, 500);
+        Assert.assertTrue(TraceIdSampler.isSampled("ffffffffffffffff", TraceIdSampler.threshold(1)));
+        Assert.assertFalse(TraceIdSampler.isSampled("ffffffffffffffff", TraceIdSampler.threshold(0)));
+    }
+
+    @Test
+    public void testFromProperties() {
+        Properties properties = new Properties();
+        properties.setProperty(TraceIdSampler.DEFAULT_RATE_PROPERTY, "0");
+        properties.setProperty(TraceIdSampler.ROUTE_RATE_PREFIX + "/checkout", "1.0");
+        TraceIdSampler sampler = TraceIdSampler.fromProperties(properties);
+
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getServletPath()).thenReturn("/checkout");
+        Assert.assertTrue(sampler.isSampled(request, "abc"));
+        Mockito.when(request.getServletPath()).thenReturn("/other");
+        Assert.assertFalse(sampler.isSampled(request, "abc"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRate() {
+        Properties properties = new Properties();
+        properties.setProperty(TraceIdSampler.DEFAULT_RATE_PROPERTY, "1.5");
+        TraceIdSampler.fromProperties(properties);
+    }
+}
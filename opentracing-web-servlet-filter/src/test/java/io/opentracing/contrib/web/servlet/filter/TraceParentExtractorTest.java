@@ -0,0 +1,132 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.propagation.Format;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TraceParentExtractorTest {
+
+    private static final String TRACE_PARENT = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+
+    @Mock
+    private HttpServletRequest request;
+
+    private HttpServletRequestExtractAdapter headers = new HttpServletRequestExtractAdapter(false);
+
+    @Before
+    public void before() {
+        headers.reset(request);
+    }
+
+    @Test
+    public void testTraceParentFormat() {
+        Mockito.when(request.getHeader(TraceParent.TRACE_PARENT_HEADER)).thenReturn(TRACE_PARENT);
+        MockTracer tracer = new MockTracer(new TraceParentPropagator());
+
+        MockSpan.MockContext spanContext =
+                (MockSpan.MockContext) new TraceParentExtractor().extract(tracer, request, headers);
+
+        Assert.assertEquals(0x8448eb211c80319cL, spanContext.traceId());
+        Assert.assertEquals(0xb7ad6b7169203331L, spanContext.spanId());
+        Mockito.verify(request, Mockito.never()).getHeaderNames();
+    }
+
+    @Test
+    public void testFallbackWithoutTraceParent() {
+        mockHeaders("traceid", "1", "spanid", "2");
+        MockTracer tracer = new MockTracer(new TraceParentPropagator());
+
+        MockSpan.MockContext spanContext =
+                (MockSpan.MockContext) new TraceParentExtractor().extract(tracer, request, headers);
+
+        Assert.assertEquals(1, spanContext.traceId());
+        Assert.assertEquals(2, spanContext.spanId());
+    }
+
+    @Test
+    public void testFallbackUnsupportedFormat() {
+        Mockito.when(request.getHeader(TraceParent.TRACE_PARENT_HEADER)).thenReturn(TRACE_PARENT);
+        mockHeaders("traceid", "1", "spanid", "2");
+        MockTracer tracer = Mockito.spy(new MockTracer(MockTracer.Propagator.TEXT_MAP));
+        TraceParentExtractor extractor = new TraceParentExtractor();
+
+        for (int i = 0; i < 2; i++) {
+            headers.reset(request);
+            MockSpan.MockContext spanContext = (MockSpan.MockContext) extractor.extract(tracer, request, headers);
+            Assert.assertEquals(1, spanContext.traceId());
+        }
+        Mockito.verify(tracer, Mockito.times(1)).extract(Mockito.eq(TraceParent.FORMAT), Mockito.any(TraceParent.class));
+    }
+
+    private void mockHeaders(String... namesAndValues) {
+        String[] names = new String[namesAndValues.length / 2];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = namesAndValues[2 * i];
+            Mockito.when(request.getHeaders(names[i])).thenAnswer(new ValuesAnswer(namesAndValues[2 * i + 1]));
+        }
+        Mockito.when(request.getHeaderNames()).thenAnswer(new ValuesAnswer(names));
+    }
+
+    private static class ValuesAnswer implements Answer<Object> {
+        private final String[] values;
+
+        ValuesAnswer(String... values) {
+            this.values = values;
+        }
+
+        @Override
+        public Object answer(InvocationOnMock invocation) {
+            return Collections.enumeration(Arrays.asList(values));
+        }
+    }
+
+    /**
+     * Propagator of a tracer which supports {@link TraceParent#FORMAT}, other formats use text map.
+     */
+    private static class TraceParentPropagator implements MockTracer.Propagator {
+        @Override
+        public <C> void inject(MockSpan.MockContext ctx, Format<C> format, C carrier) {
+            MockTracer.Propagator.TEXT_MAP.inject(ctx, format, carrier);
+        }
+
+        @Override
+        public <C> MockSpan.MockContext extract(Format<C> format, C carrier) {
+            if (carrier instanceof TraceParent) {
+                TraceParent traceParent = (TraceParent) carrier;
+                return new MockSpan.MockContext(traceParent.getTraceIdLow(), traceParent.getSpanId(),
+                        Collections.<String, String>emptyMap());
+            }
+            return MockTracer.Propagator.TEXT_MAP.extract(format, carrier);
+        }
+    }
+}
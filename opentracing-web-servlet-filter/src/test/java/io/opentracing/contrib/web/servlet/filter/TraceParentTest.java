@@ -0,0 +1,74 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TraceParentTest {
+
+    @Test
+    public void testParse() {
+        TraceParent traceParent = TraceParent.parse("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01",
+                "congo=t61rcWkgMzE");
+
+        Assert.assertNotNull(traceParent);
+        Assert.assertEquals(0, traceParent.getVersion());
+        Assert.assertEquals(0x0af7651916cd43ddL, traceParent.getTraceIdHigh());
+        Assert.assertEquals(0x8448eb211c80319cL, traceParent.getTraceIdLow());
+        Assert.assertEquals(0xb7ad6b7169203331L, traceParent.getSpanId());
+        Assert.assertTrue(traceParent.isSampled());
+        Assert.assertEquals("congo=t61rcWkgMzE", traceParent.getTraceState());
+        Assert.assertEquals("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01", traceParent.toString());
+    }
+
+    @Test
+    public void testParseMaxIds() {
+        TraceParent traceParent = TraceParent.parse("00-ffffffffffffffffffffffffffffffff-ffffffffffffffff-00",
+                null);
+
+        Assert.assertNotNull(traceParent);
+        Assert.assertEquals(-1, traceParent.getTraceIdHigh());
+        Assert.assertEquals(-1, traceParent.getTraceIdLow());
+        Assert.assertEquals(-1, traceParent.getSpanId());
+        Assert.assertFalse(traceParent.isSampled());
+        Assert.assertNull(traceParent.getTraceState());
+    }
+
+    @Test
+    public void testParseFutureVersion() {
+        Assert.assertNotNull(TraceParent.parse(
+                "01-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01-extra", null));
+        Assert.assertNull(TraceParent.parse(
+                "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01-extra", null));
+        Assert.assertNull(TraceParent.parse(
+                "01-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01extra", null));
+    }
+
+    @Test
+    public void testParseInvalid() {
+        Assert.assertNull(TraceParent.parse(null, null));
+        Assert.assertNull(TraceParent.parse("", null));
+        Assert.assertNull(TraceParent.parse("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331", null));
+        Assert.assertNull(TraceParent.parse("ff-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01", null));
+        Assert.assertNull(TraceParent.parse("00-00000000000000000000000000000000-b7ad6b7169203331-01", null));
+        Assert.assertNull(TraceParent.parse("00-0af7651916cd43dd8448eb211c80319c-0000000000000000-01", null));
+        Assert.assertNull(TraceParent.parse("00-0AF7651916CD43DD8448EB211C80319C-b7ad6b7169203331-01", null));
+        Assert.assertNull(TraceParent.parse("00-0af7651916cd43dd8448eb211c80319c-b7ad6b716920333x-01", null));
+        Assert.assertNull(TraceParent.parse("00-fffffffffffffffxffffffffffffffff-b7ad6b7169203331-01", null));
+        Assert.assertNull(TraceParent.parse("00_0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01", null));
+        Assert.assertNull(TraceParent.parse("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-0g", null));
+    }
+}
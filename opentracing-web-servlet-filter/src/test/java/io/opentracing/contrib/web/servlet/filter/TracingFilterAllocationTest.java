@@ -0,0 +1,405 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.opentracing.contrib.web.servlet.filter.decorator.ServletFilterHeaderSpanDecorator;
+import io.opentracing.noop.NoopTracerFactory;
+
+/**
+ * Asserts number of bytes allocated by {@link TracingFilter#doFilter(ServletRequest, ServletResponse, FilterChain)}
+ * per request with the no-op tracer. Request and response stubs do not allocate, except
+ * {@link HttpServletRequest#getRequestURL()} which returns a new buffer as containers do.
+ *
+ * When a change reduces allocations lower the budget accordingly.
+ */
+public class TracingFilterAllocationTest {
+
+    private static final int WARMUP_ITERATIONS = 50000;
+    private static final int ITERATIONS = 10000;
+
+    // JDK 8, used by CI, allocates more per request than later JDKs, e.g. in exception handling
+    private static final boolean JDK_8 = System.getProperty("java.specification.version").startsWith("1.");
+    private static final long SKIPPED_BUDGET = 0;
+    private static final long SYNC_BUDGET = JDK_8 ? 400 : 300;
+    private static final long HEADER_DECORATOR_BUDGET = 550;
+    private static final long ERROR_BUDGET = JDK_8 ? 4000 : 3000;
+
+    private static final ServletException CHAIN_EXCEPTION = new ServletException("allocation test");
+    static {
+        // stack trace is logged by the standard decorator, keep its size independent of the test runner
+        CHAIN_EXCEPTION.setStackTrace(new StackTraceElement[] {
+                new StackTraceElement("ExceptionServlet", "doGet", "ExceptionServlet.java", 1)});
+    }
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    @Before
+    public void before() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void testSkipped() throws Exception {
+        TracingFilter filter = tracingFilter(
+                Collections.singletonList(ServletFilterSpanDecorator.STANDARD_TAGS));
+        assertBudget("skipped", SKIPPED_BUDGET, filter, new StubRequest("/context/health"), OK_CHAIN);
+    }
+
+    @Test
+    public void testSync() throws Exception {
+        TracingFilter filter = tracingFilter(
+                Collections.singletonList(ServletFilterSpanDecorator.STANDARD_TAGS));
+        assertBudget("sync", SYNC_BUDGET, filter, new StubRequest("/context/hello"), OK_CHAIN);
+    }
+
+    @Test
+    public void testHeaderDecorator() throws Exception {
+        TracingFilter filter = tracingFilter(Arrays.asList(ServletFilterSpanDecorator.STANDARD_TAGS,
+                new ServletFilterHeaderSpanDecorator(Arrays.asList(
+                        new ServletFilterHeaderSpanDecorator.HeaderEntry("User-Agent", "user-agent"),
+                        new ServletFilterHeaderSpanDecorator.HeaderEntry("X-Missing", "missing")))));
+        assertBudget("header decorator", HEADER_DECORATOR_BUDGET, filter, new StubRequest("/context/hello"),
+                OK_CHAIN);
+    }
+
+    @Test
+    public void testError() throws Exception {
+        TracingFilter filter = tracingFilter(
+                Collections.singletonList(ServletFilterSpanDecorator.STANDARD_TAGS));
+        assertBudget("error", ERROR_BUDGET, filter, new StubRequest("/context/error"), ERROR_CHAIN);
+    }
+
+    private void assertBudget(String scenario, long budget, TracingFilter filter, StubRequest request,
+            FilterChain chain) throws Exception {
+        StubResponse response = new StubResponse();
+        run(filter, request, response, chain, WARMUP_ITERATIONS);
+
+        long threadId = Thread.currentThread().getId();
+        // measurement overhead
+        long overhead = threadMXBean.getThreadAllocatedBytes(threadId);
+        overhead = threadMXBean.getThreadAllocatedBytes(threadId) - overhead;
+
+        long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        run(filter, request, response, chain, ITERATIONS);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - start - overhead;
+
+        long perRequest = allocated / ITERATIONS;
+        Assert.assertTrue(scenario + ": " + perRequest + " bytes allocated per request, budget is " + budget,
+                perRequest <= budget);
+    }
+
+    private static void run(TracingFilter filter, StubRequest request, StubResponse response, FilterChain chain,
+            int iterations) throws IOException {
+        for (int i = 0; i < iterations; i++) {
+            request.reset();
+            try {
+                filter.doFilter(request, response, chain);
+            } catch (ServletException ex) {
+                if (ex != CHAIN_EXCEPTION) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        }
+    }
+
+    private static TracingFilter tracingFilter(List<ServletFilterSpanDecorator> decorators)
+            throws ServletException {
+        TracingFilter filter = new TracingFilter(NoopTracerFactory.create(), decorators, Pattern.compile("/health"));
+        filter.init(filterConfig(new HashMap<String, Object>()));
+        return filter;
+    }
+
+    private static final FilterChain OK_CHAIN = new FilterChain() {
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response) {
+            ((HttpServletResponse) response).setStatus(HttpServletResponse.SC_OK);
+        }
+    };
+
+    private static final FilterChain ERROR_CHAIN = new FilterChain() {
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response) throws ServletException {
+            throw CHAIN_EXCEPTION;
+        }
+    };
+
+    static FilterConfig filterConfig(final Map<String, Object> contextAttributes) {
+        final ServletContext servletContext = unsupported(ServletContext.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getAttribute":
+                        return contextAttributes.get(args[0]);
+                    case "setAttribute":
+                        contextAttributes.put((String) args[0], args[1]);
+                        return null;
+                    default:
+                        return defaultValue(method);
+                }
+            }
+        });
+        return unsupported(FilterConfig.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return "getServletContext".equals(method.getName()) ? servletContext : defaultValue(method);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unsupported(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(TracingFilterAllocationTest.class.getClassLoader(),
+                new Class<?>[] {type}, handler);
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType == boolean.class) {
+            return false;
+        } else if (returnType == int.class) {
+            return 0;
+        } else if (returnType == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private static final InvocationHandler DEFAULTS = new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            return defaultValue(method);
+        }
+    };
+
+    /**
+     * Request stub, methods used by the filter are overridden to not allocate. Other methods are delegated to a
+     * proxy which allocates and hence shows up in the results.
+     */
+    static class StubRequest extends HttpServletRequestWrapper {
+        private static final String[] HEADER_NAMES = {"Host", "User-Agent", "Accept", "Accept-Encoding",
+                "Connection"};
+        private static final String[] HEADER_VALUES = {"localhost:8080", "curl/7.58.0", "*/*", "gzip",
+                "keep-alive"};
+
+        private final String requestURI;
+        private final String servletPath;
+        private final String[] attributeNames = new String[8];
+        private final Object[] attributeValues = new Object[8];
+        private final ArrayEnumeration headerNames = new ArrayEnumeration();
+        private final ArrayEnumeration headerValues = new ArrayEnumeration();
+
+        StubRequest(String requestURI) {
+            super(unsupported(HttpServletRequest.class, DEFAULTS));
+            this.requestURI = requestURI;
+            this.servletPath = requestURI.substring(getContextPath().length());
+        }
+
+        void reset() {
+            Arrays.fill(attributeNames, null);
+            Arrays.fill(attributeValues, null);
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            for (int i = 0; i < attributeNames.length; i++) {
+                if (name.equals(attributeNames[i])) {
+                    return attributeValues[i];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void setAttribute(String name, Object o) {
+            int free = -1;
+            for (int i = 0; i < attributeNames.length; i++) {
+                if (name.equals(attributeNames[i])) {
+                    attributeValues[i] = o;
+                    return;
+                } else if (attributeNames[i] == null && free < 0) {
+                    free = i;
+                }
+            }
+            attributeNames[free] = name;
+            attributeValues[free] = o;
+        }
+
+        @Override
+        public void removeAttribute(String name) {
+            for (int i = 0; i < attributeNames.length; i++) {
+                if (name.equals(attributeNames[i])) {
+                    attributeNames[i] = null;
+                    attributeValues[i] = null;
+                }
+            }
+        }
+
+        @Override
+        public String getMethod() {
+            return "GET";
+        }
+
+        @Override
+        public String getContextPath() {
+            return "/context";
+        }
+
+        @Override
+        public String getServletPath() {
+            return servletPath;
+        }
+
+        @Override
+        public String getPathInfo() {
+            return null;
+        }
+
+        @Override
+        public String getRequestURI() {
+            return requestURI;
+        }
+
+        @Override
+        public StringBuffer getRequestURL() {
+            return new StringBuffer(48).append("http://localhost:8080").append(requestURI);
+        }
+
+        @Override
+        public String getQueryString() {
+            return null;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            for (int i = 0; i < HEADER_NAMES.length; i++) {
+                if (HEADER_NAMES[i].equalsIgnoreCase(name)) {
+                    return HEADER_VALUES[i];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            return headerNames.reset(HEADER_NAMES, 0, HEADER_NAMES.length);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            for (int i = 0; i < HEADER_NAMES.length; i++) {
+                if (HEADER_NAMES[i].equalsIgnoreCase(name)) {
+                    return headerValues.reset(HEADER_VALUES, i, i + 1);
+                }
+            }
+            return headerValues.reset(HEADER_VALUES, 0, 0);
+        }
+
+        @Override
+        public DispatcherType getDispatcherType() {
+            return DispatcherType.REQUEST;
+        }
+
+        @Override
+        public boolean isAsyncStarted() {
+            return false;
+        }
+    }
+
+    static class StubResponse extends HttpServletResponseWrapper {
+        private int status = HttpServletResponse.SC_OK;
+
+        StubResponse() {
+            super(unsupported(HttpServletResponse.class, DEFAULTS));
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            status = sc;
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return false;
+        }
+    }
+
+    /**
+     * Reusable enumeration, valid until the next reset.
+     */
+    static class ArrayEnumeration implements Enumeration<String> {
+        private String[] values;
+        private int index;
+        private int end;
+
+        ArrayEnumeration reset(String[] values, int start, int end) {
+            this.values = values;
+            this.index = start;
+            this.end = end;
+            return this;
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return index < end;
+        }
+
+        @Override
+        public String nextElement() {
+            if (index >= end) {
+                throw new NoSuchElementException();
+            }
+            return values[index++];
+        }
+    }
+}
@@ -0,0 +1,99 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.awaitility.Awaitility;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.hamcrest.core.IsEqual;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMapAdapter;
+import io.opentracing.tag.Tags;
+import okhttp3.Headers;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+public class TracingGovernorFilterTest extends AbstractJettyTest {
+
+    private TracingGovernor governor;
+
+    @Override
+    protected void initServletContext(ServletContextHandler servletContext) {
+        governor = TracingGovernor.builder()
+                .maxInFlight(1)
+                .evaluationInterval(1, TimeUnit.HOURS)
+                .build();
+        servletContext.setAttribute(TracingFilter.TRACING_GOVERNOR, governor);
+    }
+
+    @Test
+    public void testMetricsOnly() throws IOException {
+        degrade(TracingGovernor.Level.METRICS_ONLY);
+
+        Response response = request(new HashMap<String, String>());
+
+        Assert.assertEquals(202, response.code());
+        Assert.assertEquals(0, mockTracer.finishedSpans().size());
+    }
+
+    @Test
+    public void testSampledOnly() throws IOException {
+        degrade(TracingGovernor.Level.SAMPLED_ONLY);
+
+        Response response = request(new HashMap<String, String>());
+        Assert.assertEquals(202, response.code());
+        Assert.assertEquals(0, mockTracer.finishedSpans().size());
+
+        MockSpan parent = mockTracer.buildSpan("parent").start();
+        Map<String, String> injectMap = new HashMap<>();
+        mockTracer.inject(parent.context(), Format.Builtin.HTTP_HEADERS, new TextMapAdapter(injectMap));
+        request(injectMap);
+        Awaitility.await().until(reportedSpansSize(), IsEqual.equalTo(1));
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(parent.context().spanId(), mockSpans.get(0).parentId());
+        Assert.assertEquals(202, mockSpans.get(0).tags().get(Tags.HTTP_STATUS.getKey()));
+    }
+
+    private void degrade(TracingGovernor.Level level) {
+        governor.requestStarted();
+        governor.requestStarted();
+        long now = System.nanoTime();
+        while (governor.getLevel() != level) {
+            governor.evaluate(now, 0);
+        }
+        governor.requestFinished(0);
+        governor.requestFinished(0);
+    }
+
+    private Response request(Map<String, String> headers) throws IOException {
+        OkHttpClient client = new OkHttpClient();
+        Request request = new Request.Builder()
+                .url(localRequestUrl("/hello"))
+                .headers(Headers.of(headers))
+                .build();
+        return client.newCall(request).execute();
+    }
+}
@@ -0,0 +1,127 @@
+
+/*
+ * Copyright 2016-2018 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.opentracing.contrib.web.servlet.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opentracing.contrib.web.servlet.filter.TracingGovernor.Level;
+
+public class TracingGovernorTest {
+
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testStepDownAndRecoverOnInFlight() {
+        TracingGovernor governor = TracingGovernor.builder()
+                .maxInFlight(2)
+                .recovery(2, 0.5)
+                .build();
+        long now = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            governor.requestStarted();
+        }
+
+        governor.evaluate(now += INTERVAL_NANOS, 0);
+        Assert.assertEquals(Level.STANDARD_TAGS, governor.getLevel());
+        governor.evaluate(now += INTERVAL_NANOS, 0);
+        Assert.assertEquals(Level.SAMPLED_ONLY, governor.getLevel());
+        governor.evaluate(now += INTERVAL_NANOS, 0);
+        Assert.assertEquals(Level.METRICS_ONLY, governor.getLevel());
+        governor.evaluate(now += INTERVAL_NANOS, 0);
+        Assert.assertEquals(Level.METRICS_ONLY, governor.getLevel());
+
+        governor.requestFinished(0);
+        governor.requestFinished(0);
+        // 1 in-flight is not above the limit but above recovery ratio
+        governor.evaluate(now += INTERVAL_NANOS, 0);
+        governor.evaluate(now += INTERVAL_NANOS, 0);
+        Assert.assertEquals(Level.METRICS_ONLY, governor.getLevel());
+
+        governor.requestFinished(0);
+        governor.evaluate(now += INTERVAL_NANOS, 0);
+        Assert.assertEquals(Level.METRICS_ONLY, governor.getLevel());
+        governor.evaluate(now += INTERVAL_NANOS, 0);
+        Assert.assertEquals(Level.SAMPLED_ONLY, governor.getLevel());
+        governor.evaluate(now += INTERVAL_NANOS, 0);
+        governor.evaluate(now += INTERVAL_NANOS, 0);
+        Assert.assertEquals(Level.STANDARD_TAGS, governor.getLevel());
+    }
+
+    @Test
+    public void testFilterOverhead() {
+        TracingGovernor governor = TracingGovernor.builder()
+                .maxFilterOverhead(10, TimeUnit.MICROSECONDS)
+                .recovery(1, 0.5)
+                .build();
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 10; i++) {
+            governor.requestStarted();
+            governor.requestFinished(TimeUnit.MICROSECONDS.toNanos(5));
+        }
+        governor.evaluate(now += INTERVAL_NANOS, 0);
+        Assert.assertEquals(Level.FULL, governor.getLevel());
+        Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(5), governor.getFilterOverheadNanos(), 0.1);
+
+        for (int i = 0; i < 10; i++) {
+            governor.requestStarted();
+            governor.requestFinished(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        governor.evaluate(now += INTERVAL_NANOS, 0);
+        Assert.assertEquals(Level.STANDARD_TAGS, governor.getLevel());
+
+        // smoothed overhead decays over several intervals
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                governor.requestStarted();
+                governor.requestFinished(0);
+            }
+            governor.evaluate(now += INTERVAL_NANOS, 0);
+        }
+        Assert.assertEquals(Level.FULL, governor.getLevel());
+    }
+
+    @Test
+    public void testGcFraction() {
+        TracingGovernor governor = TracingGovernor.builder()
+                .maxGcFraction(0.1)
+                .build();
+        long now = System.nanoTime();
+        long gcMillis = governor.gcMillis();
+        governor.evaluate(now, gcMillis);
+
+        governor.evaluate(now += INTERVAL_NANOS, gcMillis += 50);
+        Assert.assertEquals(Level.FULL, governor.getLevel());
+        governor.evaluate(now += INTERVAL_NANOS, gcMillis += 500);
+        Assert.assertEquals(Level.STANDARD_TAGS, governor.getLevel());
+    }
+
+    @Test
+    public void testEvaluatedOncePerInterval() {
+        TracingGovernor governor = TracingGovernor.builder()
+                .maxInFlight(1)
+                .evaluationInterval(1, TimeUnit.HOURS)
+                .build();
+        governor.requestStarted();
+        governor.requestStarted();
+
+        Assert.assertEquals(Level.FULL, governor.level(System.nanoTime()));
+        Assert.assertEquals(Level.STANDARD_TAGS, governor.level(System.nanoTime() + TimeUnit.HOURS.toNanos(1)));
+        Assert.assertEquals(Level.STANDARD_TAGS, governor.level(System.nanoTime() + TimeUnit.HOURS.toNanos(1)));
+    }
+}
@@ -3,9 +3,15 @@ package io.opentracing.contrib.web.servlet.filter.decorator;
 
 import io.opentracing.Span;
 import io.opentracing.contrib.web.servlet.filter.decorator.ServletFilterHeaderSpanDecorator.HeaderEntry;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.servlet.http.HttpServletRequest;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -71,4 +77,82 @@ public class ServletFilterHeaderSpanDecoratorTest {
         Mockito.verify(span).setTag("if-match", "10");
     }
 
+    @Test
+    public void givenMaskRedaction_whenOnRequest_thenItShouldAddMask() {
+        headerEntries.add(new HeaderEntry("Authorization", "authorization", HeaderRedaction.mask()));
+        decorator = new ServletFilterHeaderSpanDecorator(headerEntries);
+        Mockito.when(httpServletRequest.getHeader("Authorization")).thenReturn("Bearer secret");
+
+        decorator.onRequest(httpServletRequest, span);
+        Mockito.verify(span).setTag("http.header.authorization", HeaderRedaction.MASK);
+    }
+
+    @Test
+    public void givenPrefixRedaction_whenOnRequest_thenItShouldKeepPrefix() {
+        headerEntries.add(new HeaderEntry("Authorization", "authorization", HeaderRedaction.prefix(7)));
+        decorator = new ServletFilterHeaderSpanDecorator(headerEntries);
+        Mockito.when(httpServletRequest.getHeader("Authorization")).thenReturn("Bearer secret");
+
+        decorator.onRequest(httpServletRequest, span);
+        Mockito.verify(span).setTag("http.header.authorization", "Bearer ***");
+    }
+
+    @Test
+    public void givenMaxValueLength_whenOnRequest_thenItShouldCutValue() {
+        decorator = new ServletFilterHeaderSpanDecorator(headerEntries, null, 3);
+        Mockito.when(httpServletRequest.getHeader("If-Match")).thenReturn("123456");
+
+        decorator.onRequest(httpServletRequest, span);
+        Mockito.verify(span).setTag("if-match", "123");
+    }
+
+    @Test
+    public void testTruncate() {
+        Assert.assertEquals("abc", HeaderRedaction.truncate(3).apply("abcdef"));
+        Assert.assertEquals("ab", HeaderRedaction.truncate(3).apply("ab"));
+    }
+
+    @Test
+    public void testPrefixMasksShortValue() {
+        Assert.assertEquals(HeaderRedaction.MASK, HeaderRedaction.prefix(7).apply("Bearer"));
+        Assert.assertEquals("Bea***", HeaderRedaction.prefix(3).apply("Bearer"));
+    }
+
+    @Test
+    public void testHmacSha256() {
+        // RFC 4231 test case 2
+        HeaderRedaction redaction = HeaderRedaction.hmacSha256("Jefe".getBytes(StandardCharsets.UTF_8));
+        String expected = "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843";
+        Assert.assertEquals(expected, redaction.apply("what do ya want for nothing?"));
+        Assert.assertEquals(expected, redaction.apply("what do ya want for nothing?"));
+        Assert.assertNotEquals(expected, redaction.apply("what do ya want for something?"));
+    }
+
+    @Test
+    public void testHmacSha256Concurrent() throws Exception {
+        final HeaderRedaction redaction = HeaderRedaction.hmacSha256("Jefe".getBytes(StandardCharsets.UTF_8));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return redaction.apply("what do ya want for nothing?");
+                    }
+                }));
+            }
+            for (Future<String> result: results) {
+                Assert.assertEquals("5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843",
+                        result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHmacEmptyKey() {
+        HeaderRedaction.hmacSha256(new byte[0]);
+    }
 }
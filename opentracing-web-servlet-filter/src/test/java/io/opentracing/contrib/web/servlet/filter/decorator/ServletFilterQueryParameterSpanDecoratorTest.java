@@ -0,0 +1,89 @@
+package io.opentracing.contrib.web.servlet.filter.decorator;
+
+import io.opentracing.Span;
+import io.opentracing.contrib.web.servlet.filter.decorator.ServletFilterQueryParameterSpanDecorator.ParameterEntry;
+import java.util.Arrays;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ServletFilterQueryParameterSpanDecoratorTest {
+
+    @Mock
+    private HttpServletRequest httpServletRequest;
+    @Mock
+    private Span span;
+
+    private ServletFilterQueryParameterSpanDecorator decorator;
+
+    @Before
+    public void init() {
+        decorator = new ServletFilterQueryParameterSpanDecorator(Arrays.asList(
+            new ParameterEntry("tenant", "tenant"),
+            new ParameterEntry("flag", "feature_flag")));
+    }
+
+    @Test
+    public void givenMatchingParameters_whenOnRequest_thenItShouldAddTags() {
+        Mockito.when(httpServletRequest.getQueryString()).thenReturn("a=1&tenant=acme&flag=new%20ui&tenant=other");
+
+        decorator.onRequest(httpServletRequest, span);
+        Mockito.verify(span).setTag("http.query.tenant", "acme");
+        Mockito.verify(span).setTag("http.query.feature_flag", "new ui");
+        Mockito.verifyNoMoreInteractions(span);
+        Mockito.verify(httpServletRequest, Mockito.never()).getParameterMap();
+        Mockito.verify(httpServletRequest, Mockito.never()).getParameter(Mockito.anyString());
+    }
+
+    @Test
+    public void givenNoQuery_whenOnRequest_thenItShouldNotAddTag() {
+        decorator.onRequest(httpServletRequest, span);
+        Mockito.verifyZeroInteractions(span);
+    }
+
+    @Test
+    public void givenEmptyOrPrefixedParameters_whenOnRequest_thenItShouldNotAddTag() {
+        Mockito.when(httpServletRequest.getQueryString()).thenReturn("tenant=&tenants=acme&flag&xflag=1");
+
+        decorator.onRequest(httpServletRequest, span);
+        Mockito.verifyZeroInteractions(span);
+    }
+
+    @Test
+    public void givenMaxValueLength_whenOnRequest_thenItShouldCutValue() {
+        decorator = new ServletFilterQueryParameterSpanDecorator(
+            Arrays.asList(new ParameterEntry("tenant", "tenant")), null, 3);
+        Mockito.when(httpServletRequest.getQueryString()).thenReturn("tenant=acme");
+
+        decorator.onRequest(httpServletRequest, span);
+        Mockito.verify(span).setTag("tenant", "acm");
+    }
+
+    @Test
+    public void givenMaxValues_whenOnRequest_thenItShouldBucketOverflow() {
+        decorator = new ServletFilterQueryParameterSpanDecorator(
+            Arrays.asList(new ParameterEntry("tenant", "tenant", 2)));
+        for (String tenant : Arrays.asList("a", "b", "c", "a", "b", "d")) {
+            Mockito.when(httpServletRequest.getQueryString()).thenReturn("tenant=" + tenant);
+            decorator.onRequest(httpServletRequest, span);
+        }
+
+        Mockito.verify(span, Mockito.times(2)).setTag("http.query.tenant", "a");
+        Mockito.verify(span, Mockito.times(2)).setTag("http.query.tenant", "b");
+        Mockito.verify(span, Mockito.times(2)).setTag("http.query.tenant", ServletFilterQueryParameterSpanDecorator.OTHER);
+        Mockito.verifyNoMoreInteractions(span);
+    }
+
+    @Test
+    public void testDecode() {
+        Assert.assertEquals("a b", ServletFilterQueryParameterSpanDecorator.decode("x=a+b", 2, 5));
+        Assert.assertEquals("%zz", ServletFilterQueryParameterSpanDecorator.decode("%zz", 0, 3));
+        Assert.assertEquals("abc", ServletFilterQueryParameterSpanDecorator.decode("abc", 0, 3));
+    }
+}
@@ -0,0 +1,82 @@
+package io.opentracing.contrib.web.servlet.filter.decorator;
+
+import io.opentracing.Span;
+import java.util.Arrays;
+import javax.servlet.http.HttpServletRequest;
+import org.hamcrest.CustomMatcher;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ServletFilterQueueTimeSpanDecoratorTest {
+
+    @Mock
+    private HttpServletRequest httpServletRequest;
+    @Mock
+    private Span span;
+
+    @Test
+    public void givenRequestStartInMillis_whenOnRequest_thenItShouldAddQueueTimeTag() {
+        long startMillis = System.currentTimeMillis() - 100;
+        Mockito.when(httpServletRequest.getHeader("X-Request-Start")).thenReturn("t=" + startMillis);
+
+        new ServletFilterQueueTimeSpanDecorator().onRequest(httpServletRequest, span);
+        Mockito.verify(span).setTag(Matchers.eq(ServletFilterQueueTimeSpanDecorator.QUEUE_TIME.getKey()),
+            Matchers.intThat(new CustomMatcher<Integer>("at least 100ms") {
+                @Override
+                public boolean matches(Object item) {
+                    return (Integer) item >= 100000 && (Integer) item < 60000000;
+                }
+            }));
+        Mockito.verifyNoMoreInteractions(span);
+    }
+
+    @Test
+    public void givenQueueStartHeaderAndLog_whenOnRequest_thenItShouldLogQueueStart() {
+        long startMicros = (System.currentTimeMillis() - 5) * 1000;
+        Mockito.when(httpServletRequest.getHeader("X-Queue-Start")).thenReturn(String.valueOf(startMicros));
+
+        new ServletFilterQueueTimeSpanDecorator(ServletFilterQueueTimeSpanDecorator.DEFAULT_HEADERS, true)
+            .onRequest(httpServletRequest, span);
+        Mockito.verify(span).setTag(Matchers.eq(ServletFilterQueueTimeSpanDecorator.QUEUE_TIME.getKey()),
+            Matchers.anyInt());
+        Mockito.verify(span).log(startMicros, ServletFilterQueueTimeSpanDecorator.QUEUE_START_EVENT);
+    }
+
+    @Test
+    public void givenInvalidHeader_whenOnRequest_thenItShouldNotAddTag() {
+        Mockito.when(httpServletRequest.getHeader("X-Request-Start")).thenReturn("t=abc");
+
+        new ServletFilterQueueTimeSpanDecorator(Arrays.asList("X-Request-Start"), true)
+            .onRequest(httpServletRequest, span);
+        Mockito.verifyZeroInteractions(span);
+    }
+
+    @Test
+    public void givenNoHeader_whenOnRequest_thenItShouldNotAddTag() {
+        new ServletFilterQueueTimeSpanDecorator().onRequest(httpServletRequest, span);
+        Mockito.verifyZeroInteractions(span);
+    }
+
+    @Test
+    public void testParseEpochMicros() {
+        Assert.assertEquals(1500000000123000L, ServletFilterQueueTimeSpanDecorator.parseEpochMicros("1500000000.123"));
+        Assert.assertEquals(1500000000123456L,
+            ServletFilterQueueTimeSpanDecorator.parseEpochMicros("t=1500000000.1234567"));
+        Assert.assertEquals(1500000000000000L, ServletFilterQueueTimeSpanDecorator.parseEpochMicros("1500000000"));
+        Assert.assertEquals(1500000000123000L, ServletFilterQueueTimeSpanDecorator.parseEpochMicros("t=1500000000123"));
+        Assert.assertEquals(1500000000123456L, ServletFilterQueueTimeSpanDecorator.parseEpochMicros("1500000000123456"));
+        Assert.assertEquals(1500000000123456L,
+            ServletFilterQueueTimeSpanDecorator.parseEpochMicros("1500000000123456789"));
+        Assert.assertEquals(-1, ServletFilterQueueTimeSpanDecorator.parseEpochMicros(""));
+        Assert.assertEquals(-1, ServletFilterQueueTimeSpanDecorator.parseEpochMicros("t="));
+        Assert.assertEquals(-1, ServletFilterQueueTimeSpanDecorator.parseEpochMicros("12345"));
+        Assert.assertEquals(-1, ServletFilterQueueTimeSpanDecorator.parseEpochMicros("1500000000123 D=1"));
+        Assert.assertEquals(-1, ServletFilterQueueTimeSpanDecorator.parseEpochMicros("99999999999999999999"));
+    }
+}
@@ -0,0 +1,148 @@
+package io.opentracing.contrib.web.servlet.filter.decorator;
+
+import io.opentracing.Span;
+import io.opentracing.contrib.web.servlet.filter.TracingFilter;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ServletFilterThreadResourcesSpanDecoratorTest {
+
+    @Mock
+    private HttpServletRequest httpServletRequest;
+    @Mock
+    private HttpServletResponse httpServletResponse;
+    @Mock
+    private Span span;
+    @Mock
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    @Before
+    public void init() {
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(httpServletRequest).setAttribute(Mockito.anyString(), Mockito.any());
+        Mockito.when(httpServletRequest.getAttribute(Mockito.anyString())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return attributes.get(invocation.getArguments()[0]);
+            }
+        });
+        Mockito.when(threadMXBean.isCurrentThreadCpuTimeSupported()).thenReturn(true);
+        Mockito.when(threadMXBean.isThreadAllocatedMemorySupported()).thenReturn(true);
+        Mockito.when(threadMXBean.getCurrentThreadCpuTime()).thenReturn(1000000L, 3000000L);
+        Mockito.when(threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId())).thenReturn(100L, 600L);
+    }
+
+    @Test
+    public void givenSyncRequest_whenOnResponse_thenItShouldAddDeltas() {
+        ServletFilterThreadResourcesSpanDecorator decorator =
+            new ServletFilterThreadResourcesSpanDecorator(1, threadMXBean);
+
+        decorator.onRequest(httpServletRequest, span);
+        decorator.onResponse(httpServletRequest, httpServletResponse, span);
+
+        Mockito.verify(span).setTag(ServletFilterThreadResourcesSpanDecorator.CPU_TIME, 2000L);
+        Mockito.verify(span).setTag(ServletFilterThreadResourcesSpanDecorator.ALLOCATED_BYTES, 500L);
+    }
+
+    @Test
+    public void givenAsyncRequest_whenOnResponse_thenItShouldNotAddTags() {
+        ServletFilterThreadResourcesSpanDecorator decorator =
+            new ServletFilterThreadResourcesSpanDecorator(1, threadMXBean);
+
+        decorator.onRequest(httpServletRequest, span);
+        attributes.put(TracingFilter.ASYNC_STARTED, Boolean.TRUE);
+        decorator.onResponse(httpServletRequest, httpServletResponse, span);
+
+        Mockito.verifyZeroInteractions(span);
+    }
+
+    @Test
+    public void givenStartedAsync_whenOnError_thenItShouldNotAddTags() {
+        ServletFilterThreadResourcesSpanDecorator decorator =
+            new ServletFilterThreadResourcesSpanDecorator(1, threadMXBean);
+
+        decorator.onRequest(httpServletRequest, span);
+        Mockito.when(httpServletRequest.isAsyncStarted()).thenReturn(true);
+        decorator.onError(httpServletRequest, httpServletResponse, new RuntimeException(), span);
+
+        Mockito.verifyZeroInteractions(span);
+    }
+
+    @Test
+    public void givenNotSampledSpan_whenOnRequest_thenItShouldNotMeasure() {
+        ServletFilterThreadResourcesSpanDecorator decorator =
+            new ServletFilterThreadResourcesSpanDecorator(1, threadMXBean);
+
+        attributes.put(TracingFilter.NOT_SAMPLED, Boolean.TRUE);
+        decorator.onRequest(httpServletRequest, span);
+        decorator.onResponse(httpServletRequest, httpServletResponse, span);
+
+        Mockito.verify(threadMXBean, Mockito.never()).getCurrentThreadCpuTime();
+        Mockito.verifyZeroInteractions(span);
+    }
+
+    @Test
+    public void givenCpuTimeDisabled_whenOnResponse_thenItShouldAddAllocatedBytesOnly() {
+        Mockito.when(threadMXBean.getCurrentThreadCpuTime()).thenReturn(-1L);
+        ServletFilterThreadResourcesSpanDecorator decorator =
+            new ServletFilterThreadResourcesSpanDecorator(1, threadMXBean);
+
+        decorator.onRequest(httpServletRequest, span);
+        decorator.onResponse(httpServletRequest, httpServletResponse, span);
+
+        Mockito.verify(span).setTag(ServletFilterThreadResourcesSpanDecorator.ALLOCATED_BYTES, 500L);
+        Mockito.verifyNoMoreInteractions(span);
+    }
+
+    @Test
+    public void givenZeroSampleRate_whenOnRequest_thenItShouldNotMeasure() {
+        ServletFilterThreadResourcesSpanDecorator decorator =
+            new ServletFilterThreadResourcesSpanDecorator(0, threadMXBean);
+
+        decorator.onRequest(httpServletRequest, span);
+        decorator.onResponse(httpServletRequest, httpServletResponse, span);
+
+        Mockito.verify(threadMXBean, Mockito.never()).getCurrentThreadCpuTime();
+        Mockito.verifyZeroInteractions(span);
+    }
+
+    @Test
+    public void testPlatformThreadMXBean() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        ServletFilterThreadResourcesSpanDecorator decorator = new ServletFilterThreadResourcesSpanDecorator();
+        MockSpan mockSpan = new MockTracer().buildSpan("GET").start();
+
+        decorator.onRequest(httpServletRequest, mockSpan);
+        byte[][] garbage = new byte[16][];
+        for (int i = 0; i < garbage.length; i++) {
+            garbage[i] = new byte[1024];
+        }
+        decorator.onResponse(httpServletRequest, httpServletResponse, mockSpan);
+
+        Assert.assertTrue(((Number) mockSpan.tags().get(ServletFilterThreadResourcesSpanDecorator.ALLOCATED_BYTES))
+            .longValue() >= garbage.length * 1024);
+    }
+}